@@ -1,20 +1,141 @@
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.file.*;
 import java.util.*;
+import java.util.concurrent.*;
 import java.util.stream.Collectors;
 
-import model.dlx.*;
-import model.ssa.*;
-import model.syntax.*;
+import driver.*;
+import driver.Compiler;
 
 import processor.*;
 
-import vcg.*;
-
 public class Main {
 	static String inFolderPath = "../Input/";
 	static String outFolderPath = "../Output/";
+	static String cacheFolderPath = "../Cache/";
+	
+	static class CompileResult {
+		String name;
+		StringBuilder log;
+		String error;
+		boolean cached;
+		PhaseStats stats;
+		CompletableFuture<Void> writing;
+		int moveInstrCount;
+		long time;
+		
+		CompileResult(String n) {
+			name = n;
+			log = new StringBuilder();
+			error = null;
+			cached = false;
+			stats = null;
+			writing = null;
+			moveInstrCount = 0;
+			time = 0;
+		}
+	}
 	
 	public static void main(String[] args) {
+		int parallelism = Runtime.getRuntime().availableProcessors();
+		int serverPort = -1;
+		int serverQueueCapacity = 64;
+		EnumSet<Artifact> artifacts = EnumSet.noneOf(Artifact.class);
+		boolean useCache = true;
+		long cacheCapacity = 64 << 20;
+		String statsPath = null;
+		String passes = PassManager.O1;
+		int frontEndThreads = 1;
+		int backEndThreads = 1;
+		boolean watch = false;
+		boolean streaming = false;
+		long unitCacheCapacity = -1;
+		String unitCachePath = null;
+		
+		for (int i = 0; i < args.length; i++) {
+			if (args[i].equals("-j") && i + 1 < args.length) {
+				parallelism = Math.max(1, Integer.parseInt(args[++i]));
+			}else if (args[i].equals("-server") && i + 1 < args.length) {
+				serverPort = Integer.parseInt(args[++i]);
+			}else if (args[i].equals("-queue") && i + 1 < args.length) {
+				serverQueueCapacity = Math.max(1, Integer.parseInt(args[++i]));
+			}else if (args[i].equals("-artifacts") && i + 1 < args.length) {
+				artifacts = parseArtifacts(args[++i]);
+				
+				if (artifacts == null) {
+					return;
+				}
+			}else if (args[i].matches("-O[012]")) {
+				passes = PassManager.preset(Integer.parseInt(args[i].substring(2)));
+			}else if (args[i].equals("-passes") && i + 1 < args.length) {
+				passes = args[++i];
+				
+				try {
+					PassManager.parse(passes);
+				} catch (IllegalArgumentException e) {
+					System.err.println(e.getMessage());
+					System.err.println("Available passes: " + String.join(", ", PassManager.getPassNames()));
+					return;
+				}
+			}else if (args[i].equals("-frontend-j") && i + 1 < args.length) {
+				frontEndThreads = Math.max(1, Integer.parseInt(args[++i]));
+			}else if (args[i].equals("-backend-j") && i + 1 < args.length) {
+				backEndThreads = Math.max(1, Integer.parseInt(args[++i]));
+			}else if (args[i].equals("-watch")) {
+				watch = true;
+			}else if (args[i].equals("-stream")) {
+				streaming = true;
+			}else if (args[i].equals("-unit-cache") && i + 1 < args.length) {
+				unitCacheCapacity = Math.max(0, Long.parseLong(args[++i])) << 20;
+			}else if (args[i].equals("-unit-cache-dir") && i + 1 < args.length) {
+				unitCachePath = args[++i];
+			}else if (args[i].equals("-stats") && i + 1 < args.length) {
+				statsPath = args[++i];
+			}else if (args[i].equals("-nocache")) {
+				useCache = false;
+			}else if (args[i].equals("-cache-size") && i + 1 < args.length) {
+				cacheCapacity = Math.max(0, Long.parseLong(args[++i])) << 20;
+			}else{
+				System.err.println("Unknown argument: " + args[i]);
+				return;
+			}
+		}
+		
+		// Watch mode keeps the units of unchanged functions in memory unless
+		// told otherwise, so those are only linked again.
+		UnitCache unitCache = null;
+		if (watch || unitCacheCapacity >= 0 || unitCachePath != null) {
+			long capacity = (unitCacheCapacity >= 0) ? unitCacheCapacity : 16 << 20;
+			
+			try {
+				unitCache = (unitCachePath != null) ? new UnitCache(capacity, unitCachePath, cacheCapacity) : new UnitCache(capacity);
+			} catch (IOException e) {
+				System.err.println("Unit cache directory unavailable: " + e.getMessage());
+				unitCache = new UnitCache(capacity);
+			}
+		}
+		
+		CompilerOptions options = new CompilerOptions();
+		options.artifacts = artifacts;
+		options.passes = passes;
+		options.collectStats = (statsPath != null);
+		options.frontEndThreads = frontEndThreads;
+		options.backEndThreads = backEndThreads;
+		options.streaming = streaming;
+		options.unitCache = unitCache;
+		
+		if (serverPort >= 0) {
+			serve(serverPort, parallelism, serverQueueCapacity, options);
+			return;
+		}
+		
+		Artifact unavailable = options.requiresRegions() ? options.getWholeProgramArtifact() : null;
+		if (unavailable != null) {
+			System.err.println("Artifact " + unavailable.getSuffix() + " needs the whole program, not available with -stream or -backend-j");
+			return;
+		}
+		
 		File inFolder = new File(inFolderPath);
 		List<File> inFiles = Arrays.asList(inFolder.listFiles());
 		List<String> names = inFiles.stream()
@@ -25,202 +146,262 @@ public class Main {
 		
 		Collections.sort(names);
 		
-		for (String name : names) {
-			compile(name);
-		}
-		
-		System.out.println("Added move instructions: " + RegisterAllocator.moveInstrCount);
-	}
-	
-	static void compile(String name) {
-		System.out.printf("--- %-10s ---\n", name);
-		
-		String inFilePath = inFolderPath + name + ".txt";
-		String outPath = outFolderPath + name + "/";
-		
-		File outFolder = new File(outPath);
-		outFolder.mkdirs();
-		
-		// Output files:
-		String outSyntaxPath = outPath + name + ".syntax.vcg";
-		
-		String outSSACFGPath = outPath + name + ".ssa.cfg.vcg";
-		String outSSADomPath = outPath + name + ".ssa.dom.vcg";
-		
-		String outSSAGenTXTPath = outPath + name + ".ssa.gen.txt";
-		String outSSAGenVCGPath = outPath + name + ".ssa.gen.vcg";
-		
-		String outDefUseGenPath = outPath + name + ".def-use.gen.txt";
-		
-		String outEliminationTrace = outPath + name + ".elimination.txt";
+		long startTime = System.nanoTime();
 		
-		String outSSAOptTXTPath = outPath + name + ".ssa.opt.txt";
-		String outSSAOptVCGPath = outPath + name + ".ssa.opt.vcg";
-		
-		String outDefUseOptPath = outPath + name + ".def-use.opt.txt";
-		
-		String outLiveRangesTrace = outPath + name + ".liveranges.txt";
-		String outRegAssignmentsTrace = outPath + name + ".regassignments.txt";
-		String outColorsPath = outPath + name + ".colors.vcg";
-		
-		String outSSARegTXTPath = outPath + name + ".ssa.reg.txt";
-		String outSSARegVCGPath = outPath + name + ".ssa.reg.vcg";
-		
-		String outDLXGenPath = outPath + name + ".dlx.gen.txt";
-
-		String outDLXAsmPath = outPath + name + ".dlx.asm.txt";
-		String outDLXBinPath = outPath + name + ".dlx.asm.bin";
-		String outDLXBinTxtPath = outPath + name + ".dlx.asm.bin.txt";
-		
-		// Scanning & Parsing:
-		Parser parser = new Parser(inFilePath);
-		
-		SymbolTable symbolTable = parser.getTable();
-		Computation computation = parser.parse();
-		
-		VCGGraph syntaxTree = new VCGGraph(computation.getVCGNode().getConnectedNodes());
-		writeToFile(syntaxTree.toString(), outSyntaxPath);
-		
-		// SSA Generator:
-		SSAGenerator generator = new SSAGenerator(symbolTable, computation);
-		
-		Program ssaProgram = generator.generate();
-		
-		VCGGraph cfgBlocks = new VCGGraph(ssaProgram.getControlFlowVCGNodes());
-		VCGGraph domBlocks = new VCGGraph(ssaProgram.getDominationVCGNodes());
-		writeToFile(cfgBlocks.toString(), outSSACFGPath);
-		writeToFile(domBlocks.toString(), outSSADomPath);
-
-		writeToFile(ssaProgram.toString(), outSSAGenTXTPath);
-		
-		VCGGraph ssaGenBlocks = new VCGGraph(ssaProgram.getInstructionVCGNodes());
-		writeToFile(ssaGenBlocks.toString(), outSSAGenVCGPath);
-		
-		// SSA Analyzer:
-		SSAAnalyzer analyzer = new SSAAnalyzer(ssaProgram);
-		
-		DefUseTable defUseTable = analyzer.getDefUseTable();
-		
-		writeToFile(defUseTable.toString(), outDefUseGenPath);
-		
-		// SSA Optimizer:
-		StringBuilder eliminationTrace = new StringBuilder();
-		SSAOptimizer optimizer = new SSAOptimizer(ssaProgram, defUseTable, eliminationTrace);
-		
-		optimizer.removeMoveInstructions();
-		//optimizer.removeUnusedInstructions();
-		//optimizer.removeUnusedInstructions();
-		optimizer.removeCommonSubexpressions();
-		//optimizer.removeUnusedInstructions();
-		
-		writeToFile(defUseTable.toString(), outDefUseOptPath);
-		writeToFile(eliminationTrace.toString(), outEliminationTrace);
-		
-		writeToFile(ssaProgram.toString(), outSSAOptTXTPath);
-		
-		VCGGraph ssaOptBlocks = new VCGGraph(ssaProgram.getInstructionVCGNodes());
-		writeToFile(ssaOptBlocks.toString(), outSSAOptVCGPath);
-		
-		// Register Allocator:
-		StringBuilder liveRangesTrace = new StringBuilder();
-		StringBuilder regAssignmentsTrace = new StringBuilder();
-		RegisterAllocator registerAllocator = new RegisterAllocator(ssaProgram, defUseTable, liveRangesTrace, regAssignmentsTrace);
-		
-		registerAllocator.allocate();
-		
-		writeToFile(liveRangesTrace.toString(), outLiveRangesTrace);
-		writeToFile(regAssignmentsTrace.toString(), outRegAssignmentsTrace);
+		BuildCache cache = null;
+		if (useCache && options.collectStats == false) {
+			try {
+				cache = new BuildCache(cacheFolderPath, cacheCapacity);
+			} catch (IOException e) {
+				System.err.println("Build cache unavailable: " + e.getMessage());
+			}
+		}
+		BuildCache buildCache = cache;
 		
-		VCGGraph regColorGraph = new VCGGraph(registerAllocator.getVCGNodes());
-		writeToFile(regColorGraph.toString(), outColorsPath);
+		// In watch mode every program keeps its functions between compilations.
+		ConcurrentHashMap<String, FunctionCache> sessions = watch ? new ConcurrentHashMap<>() : null;
 		
-		writeToFile(ssaProgram.toString(), outSSARegTXTPath);
+		ArtifactWriter writer = new ArtifactWriter(1);
+		ForkJoinPool pool = new ForkJoinPool(parallelism);
+		ArrayList<ForkJoinTask<CompileResult>> tasks = new ArrayList<>(names.size());
 		
-		VCGGraph ssaRegBlocks = new VCGGraph(ssaProgram.getInstructionVCGNodes());
-		writeToFile(ssaRegBlocks.toString(), outSSARegVCGPath);
+		for (String name : names) {
+			FunctionCache functions = watch ? sessions.computeIfAbsent(name, k -> new FunctionCache()) : null;
+			
+			tasks.add(pool.submit(() -> compile(name, options, buildCache, writer, functions)));
+		}
 		
-		// Memory Allocator:
-		MemoryAllocator memoryAllocator = new MemoryAllocator(computation, symbolTable);
+		StatsReport report = new StatsReport();
+		int failedCount = 0;
+		int cachedCount = 0;
+		int moveInstrCount = 0;
+		long compileTime = 0;
 		
-		memoryAllocator.allocate();
+		for (ForkJoinTask<CompileResult> task : tasks) {
+			CompileResult result = task.join();
+			
+			print(result);
+			
+			if (result.error != null) {
+				failedCount++;
+			}else if (result.cached) {
+				cachedCount++;
+			}
+			if (result.stats != null) {
+				report.add(result.name, result.stats);
+			}
+			moveInstrCount += result.moveInstrCount;
+			compileTime += result.time;
+		}
 		
-		// DLX Generator:
-		DLXGenerator codeGenerator = new DLXGenerator(symbolTable, ssaProgram, memoryAllocator.getGlobalSpace());
+		pool.shutdown();
+		writer.shutdown();
 		
-		DLXProgram dlxProgram = codeGenerator.generate();
+		long totalTime = System.nanoTime() - startTime;
 		
-		writeToFile(dlxProgram.toString(), outDLXGenPath);
+		System.out.printf("Compiled programs: %d (%d failed, %d cached)\n", names.size(), failedCount, cachedCount);
+		System.out.println("Added move instructions: " + moveInstrCount);
+		System.out.printf("Compile time: %d ms, wall time: %d ms, parallelism: %d\n", 
+						  compileTime / 1000000, totalTime / 1000000, parallelism);
+		if (unitCache != null) {
+			System.out.printf("Unit cache: %d hits, %d misses\n", unitCache.getHitCount(), unitCache.getMissCount());
+		}
+						
+		if (statsPath != null) {
+			printStats(report, statsPath);
+		}
 		
-		// DLX Assembler:
-		DLXAssembler codeAssembler = new DLXAssembler(dlxProgram);
+		if (watch) {
+			watch(inFolder, options, buildCache, sessions);
+		}
+	}
+	
+	static void print(CompileResult result) {
+		if (result.writing != null) {
+			try {
+				result.writing.join();
+			} catch (CompletionException e) {
+				result.error = "I/O error: " + e.getCause().getMessage();
+			}
+		}
 		
-		codeAssembler.resolveLabels();
+		System.out.print(result.log);
 		
-		ArrayList<Integer> code = codeAssembler.generateCode();
-
-		writeToFile(dlxProgram.toString(), outDLXAsmPath);
-		writeToFile(code, outDLXBinPath, outDLXBinTxtPath);
+		if (result.error != null) {
+			System.out.println(result.error);
+		}
 	}
 	
-	private static void writeToFile(ArrayList<Integer> code, String binPath, String txtPath) {
-		try {
-			File binFile = new File(binPath);
-			FileOutputStream outputStream = new FileOutputStream(binFile);
+	// Recompiles programs as their files change until interrupted.
+	static void watch(File inFolder, CompilerOptions options, BuildCache cache, ConcurrentHashMap<String, FunctionCache> sessions) {
+		ArtifactWriter writer = new ArtifactWriter(1);
+		
+		try (WatchService watcher = FileSystems.getDefault().newWatchService()) {
+			inFolder.toPath().register(watcher, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
 			
-			File txtFile = new File(txtPath);
-			FileWriter txtWriter = new FileWriter(txtFile);
+			System.out.println("Watching " + inFolder.getPath() + " for changes");
 			
-			for (int instr : code) {
-				txtWriter.write(intToBinary(instr));
-				txtWriter.write("\n");
+			while (true) {
+				WatchKey key = watcher.take();
 				
-				byte[] bin = new byte[4];
+				// Editors often save in several steps; let them finish.
+				Thread.sleep(50);
 				
-				bin[0] = (byte)(instr >> 24);
-				bin[1] = (byte)(instr >> 16);
-				bin[2] = (byte)(instr >>  8);
-				bin[3] = (byte)(instr >>  0);
+				TreeSet<String> changed = new TreeSet<>();
+				for (WatchEvent<?> event : key.pollEvents()) {
+					String file = event.context().toString();
+					
+					if (event.kind() != StandardWatchEventKinds.OVERFLOW && file.endsWith(".txt")) {
+						changed.add(file.substring(0, file.length() - 4));
+					}
+				}
 				
-				outputStream.write(bin);
+				for (String name : changed) {
+					FunctionCache functions = sessions.computeIfAbsent(name, k -> new FunctionCache());
+					CompileResult result = compile(name, options, cache, writer, functions);
+					
+					print(result);
+					
+					if (result.error == null && result.cached == false) {
+						System.out.printf("Recompiled in %d ms, reused %d of %d functions\n", 
+										  result.time / 1000000, functions.getReusedCount(), functions.getFunctionCount());
+					}
+				}
+				
+				if (key.reset() == false) {
+					System.err.println("Input folder is no longer accessible");
+					break;
+				}
 			}
 			
-			outputStream.flush();
-			outputStream.close();
+		} catch (IOException e) {
+			System.err.println("Watch mode failed: " + e.getMessage());
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} finally {
+			writer.shutdown();
+		}
+	}
+	
+	static void printStats(StatsReport report, String path) {
+		System.out.printf("%-20s %5s %10s %10s %10s %10s\n", 
+						  "Phase", "Count", "p50 us", "p99 us", "p50 KB", "p99 KB");
+						
+		for (StatsReport.Summary summary : report.summarize()) {
+			System.out.printf("%-20s %5d %10d %10d %10d %10d\n", 
+							  summary.phase, summary.count, 
+							  summary.p50Nanos / 1000, summary.p99Nanos / 1000, 
+							  summary.p50Bytes / 1024, summary.p99Bytes / 1024);
+		}
+		
+		try {
+			report.write(path);
+		} catch (IOException e) {
+			System.err.println("Could not write stats report: " + e.getMessage());
+		}
+	}
+	
+	static void serve(int port, int workerCount, int queueCapacity, CompilerOptions options) {
+		CompileServer server = new CompileServer(port, workerCount, queueCapacity, options);
+		
+		try {
+			server.start();
 			
-			txtWriter.flush();
-			txtWriter.close();
+			System.out.printf("Compile server listening on port %d (%d workers, queue %d)\n", 
+							  server.getPort(), workerCount, queueCapacity);
+							
+			server.serve();
 			
 		} catch (IOException e) {
-			e.printStackTrace();
+			System.err.println("Compile server failed: " + e.getMessage());
+		}
+	}
+	
+	static EnumSet<Artifact> parseArtifacts(String list) {
+		if (list.equals("all")) {
+			return EnumSet.allOf(Artifact.class);
+		}
+		
+		EnumSet<Artifact> artifacts = EnumSet.noneOf(Artifact.class);
+		
+		if (list.equals("none")) {
+			return artifacts;
+		}
+		
+		for (String suffix : list.split(",")) {
+			Artifact artifact = Artifact.fromSuffix(suffix);
+			
+			if (artifact == null) {
+				System.err.println("Unknown artifact: " + suffix);
+				return null;
+			}
 			
-			System.exit(0);
+			artifacts.add(artifact);
 		}
+		
+		return artifacts;
 	}
 	
-	private static void writeToFile(String contents, String path) {
+	static CompileResult compile(String name, CompilerOptions options, BuildCache cache, ArtifactWriter writer, FunctionCache functions) {
+		CompileResult result = new CompileResult(name);
+		long startTime = System.nanoTime();
+		
+		result.log.append(String.format("--- %-10s ---\n", name));
+		
 		try {
-			File file = new File(path);
-			FileWriter writer = new FileWriter(file);
-			
-			writer.write(contents);
-			writer.flush();
-			writer.close();
+			compile(name, options, cache, writer, functions, result);
 			
+		} catch (CompilationException e) {
+			result.error = e.getMessage();
+		} catch (UncheckedIOException e) {
+			result.error = "I/O error: " + e.getCause().getMessage();
+		} catch (RuntimeException e) {
+			result.error = "Internal error: " + e;
+		}
+		
+		result.time = System.nanoTime() - startTime;
+		
+		return result;
+	}
+	
+	private static void compile(String name, CompilerOptions options, BuildCache cache, ArtifactWriter writer, FunctionCache functions,
+								CompileResult result) {
+		String inFilePath = inFolderPath + name + ".txt";
+		String outPath = outFolderPath + name + "/";
+		
+		byte[] source;
+		try {
+			source = Files.readAllBytes(Paths.get(inFilePath));
 		} catch (IOException e) {
-			e.printStackTrace();
+			throw new UncheckedIOException(e);
+		}
+		
+		String key = null;
+		CompilerOutput output = null;
+		
+		if (cache != null) {
+			key = BuildCache.key(source, options);
+			output = cache.lookup(key);
+			result.cached = (output != null);
+		}
+		
+		if (output == null) {
+			Compiler compiler = new Compiler(options, name, functions);
+			
+			output = compiler.compile(ByteBuffer.wrap(source));
 			
-			System.exit(0);
+			if (cache != null) {
+				try {
+					cache.store(key, output);
+				} catch (IOException e) {
+					result.log.append("Build cache not updated: " + e.getMessage() + "\n");
+				}
+			}
 		}
+		
+		result.moveInstrCount = output.moveInstrCount;
+		result.stats = output.stats;
+		result.writing = writer.submit(outPath, name, output);
 	}
 	
-	public static String intToBinary (int n) {
-	   String binary = "";
-	   for(int i = 31; i >= 0; i--) {
-		   if (((n >> i) & 0x1) == 1) binary += "1";
-		   else binary += "0";
-	   }
-
-	   return binary;
-	}
-
 }
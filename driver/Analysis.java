@@ -0,0 +1,8 @@
+package driver;
+
+public enum Analysis {
+	DefUse,
+	Dominators,
+	Liveness;
+	
+}
@@ -0,0 +1,101 @@
+package driver;
+
+import java.util.*;
+
+import model.ssa.*;
+
+import processor.*;
+
+public class AnalysisManager {
+	private Program program;
+	
+	private DefUseTable defUseTable;
+	private DominatorTree dominatorTree;
+	private Liveness liveness;
+	
+	private EnumMap<Analysis, Integer> computeCounts;
+	
+	public AnalysisManager(Program pgm) {
+		program = pgm;
+		computeCounts = new EnumMap<>(Analysis.class);
+	}
+	
+	public Program getProgram() {
+		return program;
+	}
+	
+	public DefUseTable getDefUseTable() {
+		if (defUseTable == null) {
+			defUseTable = new SSAAnalyzer(program).getDefUseTable();
+			computed(Analysis.DefUse);
+		}
+		return defUseTable;
+	}
+	
+	public DominatorTree getDominatorTree() {
+		if (dominatorTree == null) {
+			dominatorTree = new DominatorTree(program);
+			computed(Analysis.Dominators);
+		}
+		return dominatorTree;
+	}
+	
+	public Liveness getLiveness() {
+		if (liveness == null) {
+			liveness = new Liveness(program, getDefUseTable());
+			computed(Analysis.Liveness);
+		}
+		return liveness;
+	}
+	
+	public void ensure(Analysis analysis) {
+		switch (analysis) {
+		case DefUse:
+			getDefUseTable();
+			break;
+		case Dominators:
+			getDominatorTree();
+			break;
+		case Liveness:
+			getLiveness();
+			break;
+		}
+	}
+	
+	public boolean isValid(Analysis analysis) {
+		switch (analysis) {
+		case DefUse:
+			return defUseTable != null;
+		case Dominators:
+			return dominatorTree != null;
+		case Liveness:
+			return liveness != null;
+		default:
+			return false;
+		}
+	}
+	
+	public int getComputeCount(Analysis analysis) {
+		return computeCounts.getOrDefault(analysis, 0);
+	}
+	
+	// Drops every analysis not in preserved, together with the analyses
+	// derived from a dropped one.
+	public void invalidate(EnumSet<Analysis> preserved) {
+		if (preserved.contains(Analysis.DefUse) == false) {
+			defUseTable = null;
+			liveness = null;
+		}
+		if (preserved.contains(Analysis.Dominators) == false) {
+			dominatorTree = null;
+		}
+		if (preserved.contains(Analysis.Liveness) == false) {
+			liveness = null;
+		}
+	}
+	
+	private void computed(Analysis analysis) {
+		computeCounts.merge(analysis, 1, Integer::sum);
+	}
+	
+}
@@ -0,0 +1,70 @@
+package driver;
+
+public enum Artifact {
+	SyntaxVCG("syntax.vcg"),
+	
+	ControlFlowVCG("ssa.cfg.vcg"),
+	DominationVCG("ssa.dom.vcg"),
+	
+	GeneratedSSA("ssa.gen.txt"),
+	GeneratedSSAVCG("ssa.gen.vcg"),
+	GeneratedDefUse("def-use.gen.txt"),
+	
+	EliminationTrace("elimination.txt"),
+	
+	OptimizedSSA("ssa.opt.txt"),
+	OptimizedSSAVCG("ssa.opt.vcg"),
+	OptimizedDefUse("def-use.opt.txt"),
+	
+	LiveRangesTrace("liveranges.txt"),
+	RegAssignmentsTrace("regassignments.txt"),
+	ColorsVCG("colors.vcg"),
+	
+	AllocatedSSA("ssa.reg.txt"),
+	AllocatedSSAVCG("ssa.reg.vcg"),
+	
+	GeneratedDLX("dlx.gen.txt"),
+	AssembledDLX("dlx.asm.txt"),
+	BinaryText("dlx.asm.bin.txt");
+	
+	private String suffix;
+	
+	private Artifact(String suffix) {
+		this.suffix = suffix;
+	}
+	
+	public String getSuffix() {
+		return suffix;
+	}
+	
+	// Only compiling the whole program at once produces these; the
+	// functions compiled on their own have no common SSA program.
+	public boolean isWholeProgram() {
+		switch (this) {
+		case ControlFlowVCG:
+		case DominationVCG:
+		case GeneratedSSA:
+		case GeneratedSSAVCG:
+		case GeneratedDefUse:
+		case OptimizedSSA:
+		case OptimizedSSAVCG:
+		case OptimizedDefUse:
+		case ColorsVCG:
+		case AllocatedSSA:
+		case AllocatedSSAVCG:
+			return true;
+		default:
+			return false;
+		}
+	}
+	
+	public static Artifact fromSuffix(String suffix) {
+		for (Artifact artifact : values()) {
+			if (artifact.suffix.equals(suffix)) {
+				return artifact;
+			}
+		}
+		return null;
+	}
+	
+}
@@ -0,0 +1,89 @@
+package driver;
+
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+public class ArtifactWriter {
+	private static final long MappedThreshold = 1 << 20;
+	
+	private ExecutorService executor;
+	
+	public ArtifactWriter(int threadCount) {
+		executor = Executors.newFixedThreadPool(threadCount, runnable -> {
+			Thread thread = new Thread(runnable, "artifact-writer");
+			thread.setDaemon(true);
+			return thread;
+		});
+	}
+	
+	public CompletableFuture<Void> submit(String outPath, String name, CompilerOutput output) {
+		return CompletableFuture.runAsync(() -> {
+			try {
+				write(outPath, name, output);
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}, executor);
+	}
+	
+	public void shutdown() {
+		executor.shutdown();
+	}
+	
+	public static void write(String outPath, String name, CompilerOutput output) throws IOException {
+		Files.createDirectories(Paths.get(outPath));
+		
+		write(Paths.get(outPath, name + ".dlx.asm.bin"), encode(output.code));
+		
+		for (Map.Entry<Artifact, String> entry : output.artifacts.entrySet()) {
+			byte[] contents = entry.getValue().getBytes(StandardCharsets.UTF_8);
+			
+			write(Paths.get(outPath, name + "." + entry.getKey().getSuffix()), ByteBuffer.wrap(contents));
+		}
+	}
+	
+	public static ByteBuffer encode(int[] code) {
+		ByteBuffer buffer = ByteBuffer.allocateDirect(code.length * 4);
+		
+		buffer.order(ByteOrder.BIG_ENDIAN);
+		buffer.asIntBuffer().put(code);
+		
+		return buffer;
+	}
+	
+	public static void write(Path path, ByteBuffer... buffers) throws IOException {
+		long size = 0;
+		for (ByteBuffer buffer : buffers) {
+			size += buffer.remaining();
+		}
+		
+		if (size >= MappedThreshold) {
+			try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE,
+															  StandardOpenOption.TRUNCATE_EXISTING,
+															  StandardOpenOption.READ,
+															  StandardOpenOption.WRITE)) {
+				MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+				
+				for (ByteBuffer buffer : buffers) {
+					mapped.put(buffer);
+				}
+			}
+			
+		}else{
+			try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE,
+															  StandardOpenOption.TRUNCATE_EXISTING,
+															  StandardOpenOption.WRITE)) {
+				long written = 0;
+				while (written < size) {
+					written += channel.write(buffers);
+				}
+			}
+		}
+	}
+	
+}
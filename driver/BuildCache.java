@@ -0,0 +1,194 @@
+package driver;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.nio.file.attribute.FileTime;
+import java.security.*;
+import java.util.*;
+
+// Entries are content-addressed: the key is a SHA-256 digest of the compiler
+// version, the requested artifacts and the source bytes, so an entry never
+// needs to be invalidated, only evicted.
+public class BuildCache {
+	private static final String EntrySuffix = ".entry";
+	
+	private Path directory;
+	private long capacity;
+	private long size;
+	private LinkedHashMap<String, Long> entries;
+	
+	public BuildCache(String directoryPath, long capacity) throws IOException {
+		this.directory = Paths.get(directoryPath);
+		this.capacity = capacity;
+		this.size = 0;
+		this.entries = new LinkedHashMap<>(16, 0.75f, true);
+		
+		Files.createDirectories(directory);
+		
+		ArrayList<Path> files = new ArrayList<>();
+		try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, "*" + EntrySuffix)) {
+			for (Path file : stream) {
+				files.add(file);
+			}
+		}
+		
+		HashMap<Path, FileTime> times = new HashMap<>();
+		for (Path file : files) {
+			times.put(file, Files.getLastModifiedTime(file));
+		}
+		files.sort((a, b) -> times.get(a).compareTo(times.get(b)));
+		
+		for (Path file : files) {
+			String name = file.getFileName().toString();
+			long length = Files.size(file);
+			
+			entries.put(name.substring(0, name.length() - EntrySuffix.length()), length);
+			size += length;
+		}
+		
+		evict();
+	}
+	
+	public static String key(byte[] source, CompilerOptions options) {
+		MessageDigest digest;
+		try {
+			digest = MessageDigest.getInstance("SHA-256");
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+		
+		digest.update(Compiler.Version.getBytes(StandardCharsets.UTF_8));
+		digest.update((byte)0);
+		for (Artifact artifact : options.artifacts) {
+			digest.update(artifact.getSuffix().getBytes(StandardCharsets.UTF_8));
+			digest.update((byte)0);
+		}
+		digest.update((byte)0);
+		digest.update(options.passes.getBytes(StandardCharsets.UTF_8));
+		digest.update((byte)0);
+		digest.update((byte)(options.compilesRegions() ? 1 : 0));
+		digest.update(source);
+		
+		StringBuilder bob = new StringBuilder();
+		for (byte b : digest.digest()) {
+			bob.append(String.format("%02x", b));
+		}
+		return bob.toString();
+	}
+	
+	public CompilerOutput lookup(String key) {
+		synchronized (this) {
+			if (entries.get(key) == null) {
+				return null;
+			}
+		}
+		
+		Path file = directory.resolve(key + EntrySuffix);
+		
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+			CompilerOutput output = new CompilerOutput();
+			
+			output.code = new int[in.readInt()];
+			for (int i = 0; i < output.code.length; i++) {
+				output.code[i] = in.readInt();
+			}
+			output.moveInstrCount = in.readInt();
+			
+			int artifactCount = in.readInt();
+			for (int i = 0; i < artifactCount; i++) {
+				Artifact artifact = Artifact.fromSuffix(in.readUTF());
+				byte[] contents = new byte[in.readInt()];
+				in.readFully(contents);
+				
+				if (artifact == null) {
+					throw new IOException("Unknown artifact in cache entry");
+				}
+				output.artifacts.put(artifact, new String(contents, StandardCharsets.UTF_8));
+			}
+			
+			Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis()));
+			
+			return output;
+			
+		} catch (IOException e) {
+			// Evicted by another worker or damaged; either way it is a miss.
+			remove(key);
+			return null;
+		}
+	}
+	
+	public void store(String key, CompilerOutput output) throws IOException {
+		Path file = directory.resolve(key + EntrySuffix);
+		Path temp = Files.createTempFile(directory, key, ".tmp");
+		long length;
+		
+		try {
+			try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+				out.writeInt(output.code.length);
+				for (int instr : output.code) {
+					out.writeInt(instr);
+				}
+				out.writeInt(output.moveInstrCount);
+				
+				out.writeInt(output.artifacts.size());
+				for (Map.Entry<Artifact, String> entry : output.artifacts.entrySet()) {
+					byte[] contents = entry.getValue().getBytes(StandardCharsets.UTF_8);
+					
+					out.writeUTF(entry.getKey().getSuffix());
+					out.writeInt(contents.length);
+					out.write(contents);
+				}
+			}
+			
+			length = Files.size(temp);
+			
+			Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+			
+		} finally {
+			Files.deleteIfExists(temp);
+		}
+		
+		synchronized (this) {
+			Long previous = entries.put(key, length);
+			if (previous != null) {
+				size -= previous;
+			}
+			size += length;
+			
+			evict();
+		}
+	}
+	
+	private synchronized void remove(String key) {
+		Long length = entries.remove(key);
+		
+		if (length != null) {
+			size -= length;
+			
+			try {
+				Files.deleteIfExists(directory.resolve(key + EntrySuffix));
+			} catch (IOException e) {
+				// Left for the next eviction pass.
+			}
+		}
+	}
+	
+	private synchronized void evict() {
+		Iterator<Map.Entry<String, Long>> iterator = entries.entrySet().iterator();
+		
+		while (size > capacity && iterator.hasNext()) {
+			Map.Entry<String, Long> entry = iterator.next();
+			
+			try {
+				Files.deleteIfExists(directory.resolve(entry.getKey() + EntrySuffix));
+			} catch (IOException e) {
+				continue;
+			}
+			
+			size -= entry.getValue();
+			iterator.remove();
+		}
+	}
+	
+}
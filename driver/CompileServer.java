@@ -0,0 +1,183 @@
+package driver;
+
+import java.io.*;
+import java.net.*;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.*;
+
+import processor.*;
+
+public class CompileServer {
+	public static final byte StatusOK = 0;
+	public static final byte StatusCompilationError = 1;
+	public static final byte StatusBusy = 2;
+	public static final byte StatusBadRequest = 3;
+	public static final byte StatusInternalError = 4;
+	
+	private static final int MaxSourceLength = 16 << 20;
+	private static final int MaxArtifactCount = Artifact.values().length;
+	private static final int ReadTimeout = 30000;
+	
+	private int port;
+	private ServerSocket serverSocket;
+	private ThreadPoolExecutor workers;
+	private CompilerOptions defaults;
+	
+	public CompileServer(int port, int workerCount, int queueCapacity) {
+		this(port, workerCount, queueCapacity, new CompilerOptions());
+	}
+	
+	// Every request is compiled with a copy of the defaults and the artifacts
+	// it asks for. With a unit cache in the defaults, functions already
+	// compiled for any earlier request are only linked.
+	public CompileServer(int port, int workerCount, int queueCapacity, CompilerOptions defaults) {
+		this.port = port;
+		this.defaults = defaults;
+		
+		workers = new ThreadPoolExecutor(workerCount, workerCount,
+										 0, TimeUnit.MILLISECONDS,
+										 new ArrayBlockingQueue<>(queueCapacity),
+										 new ThreadPoolExecutor.AbortPolicy());
+	}
+	
+	public int getPort() {
+		return serverSocket.getLocalPort();
+	}
+	
+	public void start() throws IOException {
+		serverSocket = new ServerSocket(port, 50, InetAddress.getLoopbackAddress());
+	}
+	
+	public void serve() throws IOException {
+		while (serverSocket.isClosed() == false) {
+			Socket socket;
+			try {
+				socket = serverSocket.accept();
+			} catch (SocketException e) {
+				break;
+			}
+			
+			try {
+				workers.execute(() -> handle(socket));
+				
+			} catch (RejectedExecutionException e) {
+				respondWithError(socket, StatusBusy, "Server is busy");
+			}
+		}
+	}
+	
+	public void stop() throws IOException {
+		serverSocket.close();
+		workers.shutdown();
+	}
+	
+	// Request:  int artifactCount, artifactCount x UTF suffix, int sourceLength, UTF-8 source
+	// Response: byte status, then for StatusOK: int codeLength, codeLength x int instruction,
+	//           int artifactCount, artifactCount x (UTF suffix, int length, UTF-8 contents);
+	//           otherwise: int length, UTF-8 message
+	private void handle(Socket socket) {
+		try (Socket s = socket) {
+			s.setSoTimeout(ReadTimeout);
+			
+			DataInputStream in = new DataInputStream(new BufferedInputStream(s.getInputStream()));
+			DataOutputStream out = new DataOutputStream(new BufferedOutputStream(s.getOutputStream()));
+			
+			CompilerOptions options = new CompilerOptions(defaults);
+			options.artifacts.clear();
+			String source;
+			try {
+				int artifactCount = in.readInt();
+				if (artifactCount < 0 || artifactCount > MaxArtifactCount) {
+					writeError(out, StatusBadRequest, "Invalid artifact count");
+					return;
+				}
+				
+				for (int i = 0; i < artifactCount; i++) {
+					String suffix = in.readUTF();
+					Artifact artifact = Artifact.fromSuffix(suffix);
+					
+					if (artifact == null) {
+						writeError(out, StatusBadRequest, "Unknown artifact: " + suffix);
+						return;
+					}
+					options.artifacts.add(artifact);
+				}
+				
+				Artifact unavailable = options.requiresRegions() ? options.getWholeProgramArtifact() : null;
+				if (unavailable != null) {
+					writeError(out, StatusBadRequest, "Artifact needs the whole program: " + unavailable.getSuffix());
+					return;
+				}
+				
+				int sourceLength = in.readInt();
+				if (sourceLength < 0 || sourceLength > MaxSourceLength) {
+					writeError(out, StatusBadRequest, "Invalid source length");
+					return;
+				}
+				
+				byte[] sourceBytes = new byte[sourceLength];
+				in.readFully(sourceBytes);
+				
+				source = new String(sourceBytes, StandardCharsets.UTF_8);
+				
+			} catch (EOFException | SocketTimeoutException e) {
+				writeError(out, StatusBadRequest, "Incomplete request");
+				return;
+			}
+			
+			CompilerOutput output;
+			try {
+				Compiler compiler = new Compiler(options);
+				
+				output = compiler.compile(source);
+				
+			} catch (CompilationException e) {
+				writeError(out, StatusCompilationError, e.getMessage());
+				return;
+			} catch (RuntimeException | StackOverflowError e) {
+				writeError(out, StatusInternalError, e.toString());
+				return;
+			}
+			
+			out.writeByte(StatusOK);
+			out.writeInt(output.code.length);
+			for (int instr : output.code) {
+				out.writeInt(instr);
+			}
+			out.writeInt(output.artifacts.size());
+			for (Map.Entry<Artifact, String> entry : output.artifacts.entrySet()) {
+				byte[] contents = entry.getValue().getBytes(StandardCharsets.UTF_8);
+				
+				out.writeUTF(entry.getKey().getSuffix());
+				out.writeInt(contents.length);
+				out.write(contents);
+			}
+			out.flush();
+			
+		} catch (IOException e) {
+			// Client went away, nothing left to report.
+		}
+	}
+	
+	private static void respondWithError(Socket socket, byte status, String message) {
+		try (Socket s = socket) {
+			DataOutputStream out = new DataOutputStream(new BufferedOutputStream(s.getOutputStream()));
+			
+			writeError(out, status, message);
+			
+		} catch (IOException e) {
+			// Client went away, nothing left to report.
+		}
+	}
+	
+	private static void writeError(DataOutputStream out, byte status, String message) throws IOException {
+		byte[] contents = message.getBytes(StandardCharsets.UTF_8);
+		
+		out.writeByte(status);
+		out.writeInt(contents.length);
+		out.write(contents);
+		out.flush();
+	}
+	
+}
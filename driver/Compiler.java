@@ -0,0 +1,527 @@
+package driver;
+
+import java.nio.ByteBuffer;
+import java.util.*;
+import java.util.concurrent.*;
+
+import model.dlx.*;
+import model.ssa.*;
+import model.syntax.*;
+
+import processor.*;
+
+import jfr.*;
+
+import vcg.*;
+
+public class Compiler {
+	public static final String Version = "4";
+	
+	private CompilerOptions options;
+	private String unitName;
+	private FunctionCache functionCache;
+	
+	public Compiler(CompilerOptions opts) {
+		this(opts, null);
+	}
+	
+	public Compiler(CompilerOptions opts, String unit) {
+		this(opts, unit, null);
+	}
+	
+	// Functions unchanged since the last compilation through the same cache
+	// are not parsed or lowered to SSA again.
+	public Compiler(CompilerOptions opts, String unit, FunctionCache cache) {
+		options = opts;
+		unitName = unit;
+		functionCache = cache;
+	}
+	
+	public CompilerOutput compile(CharSequence source) {
+		return compile(new Reader(source));
+	}
+	
+	public CompilerOutput compile(ByteBuffer source) {
+		return compile(new Reader(source));
+	}
+	
+	public CompilerOutput compile(Reader source) {
+		ExecutorService frontEnd = null;
+		if (options.frontEndThreads > 1) {
+			frontEnd = new ForkJoinPool(options.frontEndThreads);
+		}
+		ExecutorService backEnd = null;
+		if (options.backEndThreads > 1) {
+			backEnd = new ForkJoinPool(options.backEndThreads);
+		}
+		
+		PassEvent.enterUnit(unitName);
+		try {
+			return run(source, frontEnd, backEnd);
+		} finally {
+			PassEvent.exitUnit();
+			
+			if (frontEnd != null) {
+				frontEnd.shutdown();
+			}
+			if (backEnd != null) {
+				backEnd.shutdown();
+			}
+		}
+	}
+	
+	private CompilerOutput run(Reader source, ExecutorService frontEnd, ExecutorService backEnd) {
+		CompilerOutput output = new CompilerOutput();
+		PhaseStats stats = new PhaseStats(options.collectStats);
+		
+		// Scanning & Parsing:
+		Parser parser = (functionCache != null) ? new Parser(source, functionCache) : new Parser(source);
+		
+		SymbolTable symbolTable = parser.getTable();
+		
+		stats.begin("parse");
+		Computation computation = parser.parse(frontEnd);
+		stats.end(null, null, null);
+		
+		if (options.wants(Artifact.SyntaxVCG)) {
+			VCGGraph syntaxTree = new VCGGraph(computation.getVCGNode().getConnectedNodes());
+			output.artifacts.put(Artifact.SyntaxVCG, syntaxTree.toString());
+		}
+		
+		if (options.compilesRegions()) {
+			return stream(output, stats, symbolTable, computation, backEnd);
+		}
+		
+		// SSA Generator:
+		SSAGenerator generator = new SSAGenerator(symbolTable, computation);
+		
+		stats.begin("ssa-generate");
+		Program ssaProgram = generator.generate(frontEnd, functionCache);
+		stats.end(ssaProgram, null, null);
+		
+		if (options.wants(Artifact.ControlFlowVCG)) {
+			VCGGraph cfgBlocks = new VCGGraph(ssaProgram.getControlFlowVCGNodes());
+			output.artifacts.put(Artifact.ControlFlowVCG, cfgBlocks.toString());
+		}
+		if (options.wants(Artifact.DominationVCG)) {
+			VCGGraph domBlocks = new VCGGraph(ssaProgram.getDominationVCGNodes());
+			output.artifacts.put(Artifact.DominationVCG, domBlocks.toString());
+		}
+		
+		addProgramArtifacts(output, ssaProgram, Artifact.GeneratedSSA, Artifact.GeneratedSSAVCG);
+		
+		// SSA Analyzer:
+		AnalysisManager analyses = new AnalysisManager(ssaProgram);
+		
+		stats.begin("ssa-analyze");
+		DefUseTable defUseTable = analyses.getDefUseTable();
+		stats.end(ssaProgram, defUseTable, null);
+		
+		if (options.wants(Artifact.GeneratedDefUse)) {
+			output.artifacts.put(Artifact.GeneratedDefUse, defUseTable.toString());
+		}
+		
+		// SSA Optimizer:
+		TraceSink eliminationTrace = newTrace(Artifact.EliminationTrace);
+		PassContext passContext = new PassContext(analyses, eliminationTrace, stats);
+		PassManager passManager = new PassManager(options.passes);
+		
+		passManager.run(passContext);
+		
+		defUseTable = analyses.getDefUseTable();
+		
+		if (options.wants(Artifact.OptimizedDefUse)) {
+			output.artifacts.put(Artifact.OptimizedDefUse, defUseTable.toString());
+		}
+		if (eliminationTrace.isEnabled()) {
+			output.artifacts.put(Artifact.EliminationTrace, eliminationTrace.toString());
+		}
+		
+		addProgramArtifacts(output, ssaProgram, Artifact.OptimizedSSA, Artifact.OptimizedSSAVCG);
+		
+		// Register Allocator:
+		stats.begin("liveness");
+		Liveness liveness = analyses.getLiveness();
+		stats.end(ssaProgram, defUseTable, null);
+		
+		TraceSink liveRangesTrace = newTrace(Artifact.LiveRangesTrace);
+		TraceSink regAssignmentsTrace = newTrace(Artifact.RegAssignmentsTrace);
+		RegisterAllocator registerAllocator = new RegisterAllocator(ssaProgram, defUseTable, liveness, liveRangesTrace, regAssignmentsTrace);
+		
+		stats.begin("register-allocate");
+		registerAllocator.allocate();
+		stats.end(ssaProgram, defUseTable, registerAllocator);
+		
+		output.moveInstrCount = registerAllocator.getMoveInstrCount();
+		
+		if (liveRangesTrace.isEnabled()) {
+			output.artifacts.put(Artifact.LiveRangesTrace, liveRangesTrace.toString());
+		}
+		if (regAssignmentsTrace.isEnabled()) {
+			output.artifacts.put(Artifact.RegAssignmentsTrace, regAssignmentsTrace.toString());
+		}
+		if (options.wants(Artifact.ColorsVCG)) {
+			VCGGraph regColorGraph = new VCGGraph(registerAllocator.getVCGNodes());
+			output.artifacts.put(Artifact.ColorsVCG, regColorGraph.toString());
+		}
+		
+		addProgramArtifacts(output, ssaProgram, Artifact.AllocatedSSA, Artifact.AllocatedSSAVCG);
+		
+		// Memory Allocator:
+		MemoryAllocator memoryAllocator = new MemoryAllocator(computation, symbolTable);
+		
+		stats.begin("memory-allocate");
+		memoryAllocator.allocate();
+		stats.end(ssaProgram, defUseTable, registerAllocator);
+		
+		// DLX Generator:
+		DLXGenerator codeGenerator = new DLXGenerator(symbolTable, ssaProgram, memoryAllocator.getGlobalSpace());
+		
+		stats.begin("dlx-generate");
+		DLXProgram dlxProgram = codeGenerator.generate();
+		stats.end(ssaProgram, defUseTable, registerAllocator);
+		
+		return assemble(output, stats, dlxProgram, ssaProgram, defUseTable, registerAllocator);
+	}
+	
+	private static final Artifact[] RegionArtifacts = {
+		Artifact.EliminationTrace, Artifact.LiveRangesTrace, Artifact.RegAssignmentsTrace,
+		Artifact.GeneratedDLX, Artifact.AssembledDLX
+	};
+	
+	// One function (or main) compiled on its own, from SSA generation to an
+	// object unit.
+	private static class Region {
+		FunctionDeclaration function;
+		
+		ObjectUnit unit;
+		String generatedDLX;
+		String assembledDLX;
+		int moveInstrCount;
+		
+		PhaseStats stats;
+		TraceSink eliminationTrace;
+		TraceSink liveRangesTrace;
+		TraceSink regAssignmentsTrace;
+		
+		Region(FunctionDeclaration f) {
+			function = f;
+		}
+	}
+	
+	// Takes main and then one function at a time through SSA generation,
+	// optimization, register allocation, DLX generation and assembly, so
+	// only that function's SSA and analyses are alive. Memory is laid out
+	// from the declarations beforehand, and the object units are linked
+	// once all of them are assembled. Artifacts of the whole SSA program
+	// are not available, and the DLX listings are those of the units.
+	//
+	// With an executor, the functions are compiled on its threads. Units
+	// found in the unit cache are only linked.
+	private CompilerOutput stream(CompilerOutput output, PhaseStats stats, SymbolTable symbolTable, Computation computation, 
+								  ExecutorService backEnd) {
+		MemoryAllocator memoryAllocator = new MemoryAllocator(computation, symbolTable);
+		
+		stats.begin("memory-allocate");
+		memoryAllocator.allocate();
+		stats.end(null, null, null);
+		
+		int globalSpace = memoryAllocator.getGlobalSpace();
+		PassManager passManager = new PassManager(options.passes);
+		UnitCache unitCache = getUnitCache();
+		
+		ArrayList<Region> regions = new ArrayList<>();
+		regions.add(new Region(null));
+		for (FunctionDeclaration function : computation.functions) {
+			regions.add(new Region(function));
+		}
+		
+		if (backEnd == null) {
+			for (Region region : regions) {
+				region.stats = new PhaseStats(options.collectStats);
+				
+				compileRegion(region, symbolTable, computation, globalSpace, passManager, unitCache);
+				
+				stats.merge(region.stats);
+			}
+			
+		}else{
+			String unit = PassEvent.currentUnit();
+			ArrayList<Future<Region>> tasks = new ArrayList<>();
+			
+			for (Region region : regions) {
+				region.stats = new PhaseStats(options.collectStats);
+				
+				tasks.add(backEnd.submit(() -> {
+					PassEvent.enterUnit(unit);
+					try {
+						compileRegion(region, symbolTable, computation, globalSpace, passManager, unitCache);
+						return region;
+					} finally {
+						PassEvent.exitUnit();
+					}
+				}));
+			}
+			join(tasks);
+			
+			for (Region region : regions) {
+				stats.merge(region.stats);
+			}
+		}
+		
+		ArrayList<ObjectUnit> objectUnits = new ArrayList<>();
+		StringBuilder generatedDLX = new StringBuilder();
+		StringBuilder assembledDLX = new StringBuilder();
+		StringBuilder eliminations = new StringBuilder();
+		StringBuilder liveRanges = new StringBuilder();
+		StringBuilder regAssignments = new StringBuilder();
+		
+		for (Region region : regions) {
+			objectUnits.add(region.unit);
+			
+			output.moveInstrCount += region.moveInstrCount;
+			
+			if (region.generatedDLX != null) {
+				generatedDLX.append(region.generatedDLX);
+			}
+			if (region.assembledDLX != null) {
+				assembledDLX.append(region.assembledDLX);
+			}
+			if (region.eliminationTrace.isEnabled()) {
+				eliminations.append(region.eliminationTrace.toString());
+			}
+			if (region.liveRangesTrace.isEnabled()) {
+				liveRanges.append(region.liveRangesTrace.toString());
+			}
+			if (region.regAssignmentsTrace.isEnabled()) {
+				regAssignments.append(region.regAssignmentsTrace.toString());
+			}
+		}
+		
+		if (options.wants(Artifact.EliminationTrace)) {
+			output.artifacts.put(Artifact.EliminationTrace, eliminations.toString());
+		}
+		if (options.wants(Artifact.LiveRangesTrace)) {
+			output.artifacts.put(Artifact.LiveRangesTrace, liveRanges.toString());
+		}
+		if (options.wants(Artifact.RegAssignmentsTrace)) {
+			output.artifacts.put(Artifact.RegAssignmentsTrace, regAssignments.toString());
+		}
+		if (options.wants(Artifact.GeneratedDLX)) {
+			output.artifacts.put(Artifact.GeneratedDLX, generatedDLX.toString());
+		}
+		
+		// DLX Linker:
+		DLXLinker linker = new DLXLinker(memoryAllocator.getGlobalOffsets(), globalSpace);
+		
+		stats.begin("dlx-link");
+		output.code = linker.link(objectUnits);
+		stats.end(null, null, null);
+		
+		if (options.wants(Artifact.AssembledDLX)) {
+			output.artifacts.put(Artifact.AssembledDLX, assembledDLX.toString());
+		}
+		if (options.wants(Artifact.BinaryText)) {
+			output.artifacts.put(Artifact.BinaryText, toBinaryText(output.code));
+		}
+		
+		if (stats.isEnabled()) {
+			output.stats = stats;
+		}
+		
+		return output;
+	}
+	
+	// Leaves the object unit, and the listings if wanted, in the region and
+	// drops everything else. A unit found in the cache is not compiled.
+	private void compileRegion(Region region, SymbolTable symbolTable, Computation computation, int globalSpace, 
+							   PassManager passManager, UnitCache unitCache) {
+		PhaseStats stats = region.stats;
+		
+		region.eliminationTrace = newTrace(Artifact.EliminationTrace);
+		region.liveRangesTrace = newTrace(Artifact.LiveRangesTrace);
+		region.regAssignmentsTrace = newTrace(Artifact.RegAssignmentsTrace);
+		
+		String key = null;
+		if (unitCache != null) {
+			key = UnitCache.key(options, symbolTable, computation, region.function);
+			UnitCache.Entry entry = unitCache.lookup(key);
+			
+			if (entry != null) {
+				region.unit = entry.unit;
+				region.moveInstrCount = entry.moveInstrCount;
+				return;
+			}
+		}
+		
+		// SSA Generator:
+		SSAGenerator generator = new SSAGenerator(symbolTable, computation);
+		
+		stats.begin("ssa-generate");
+		Program ssaProgram = generator.generateRegion(region.function);
+		stats.end(ssaProgram, null, null);
+		
+		// SSA Optimizer:
+		AnalysisManager analyses = new AnalysisManager(ssaProgram);
+		PassContext passContext = new PassContext(analyses, region.eliminationTrace, stats);
+		
+		passManager.run(passContext);
+		
+		// Register Allocator:
+		DefUseTable defUseTable = analyses.getDefUseTable();
+		Liveness liveness = analyses.getLiveness();
+		RegisterAllocator registerAllocator = new RegisterAllocator(ssaProgram, defUseTable, liveness, 
+																	region.liveRangesTrace, region.regAssignmentsTrace);
+																	
+		stats.begin("register-allocate");
+		registerAllocator.allocate();
+		stats.end(ssaProgram, defUseTable, registerAllocator);
+		
+		region.moveInstrCount = registerAllocator.getMoveInstrCount();
+		
+		// DLX Generator:
+		DLXGenerator codeGenerator = new DLXGenerator(symbolTable, ssaProgram, globalSpace);
+		
+		stats.begin("dlx-generate");
+		DLXProgram dlxProgram = codeGenerator.generate();
+		stats.end(ssaProgram, defUseTable, registerAllocator);
+		
+		// Each call becomes one BSR numbered like its call instruction.
+		HashMap<Integer, String> callees = new HashMap<>();
+		for (Map.Entry<Instruction, Integer> entry : generator.getFunctionCalls().entrySet()) {
+			callees.put(entry.getKey().getNumber(), symbolTable.IDToName(entry.getValue()));
+		}
+		
+		for (DLXBlock block : dlxProgram.getBlocks()) {
+			for (DLXInstruction instr : block.getInstructions()) {
+				if (instr.op == DLXInstruction.Operator.BSR) {
+					instr.relocation = new Relocation(Relocation.Kind.Call, callees.get(instr.number), 0);
+				}
+			}
+		}
+		
+		if (options.wants(Artifact.GeneratedDLX)) {
+			region.generatedDLX = dlxProgram.toString();
+		}
+		
+		// DLX Assembler:
+		DLXAssembler codeAssembler = new DLXAssembler(dlxProgram);
+		
+		stats.begin("dlx-assemble");
+		region.unit = codeAssembler.assembleUnit(unitName(region, symbolTable));
+		stats.end(ssaProgram, defUseTable, registerAllocator);
+		
+		if (options.wants(Artifact.AssembledDLX)) {
+			region.assembledDLX = dlxProgram.toString();
+		}
+		
+		if (key != null) {
+			unitCache.store(key, new UnitCache.Entry(region.unit, region.moveInstrCount));
+		}
+	}
+	
+	// Main is the keyword, so it can not clash with a function.
+	private static String unitName(Region region, SymbolTable symbolTable) {
+		return (region.function != null) ? symbolTable.IDToName(region.function.nameID) : "main";
+	}
+	
+	// Cached units come without traces or listings.
+	private UnitCache getUnitCache() {
+		for (Artifact artifact : RegionArtifacts) {
+			if (options.wants(artifact)) {
+				return null;
+			}
+		}
+		return options.unitCache;
+	}
+	
+	private static <T> void join(List<Future<T>> tasks) {
+		boolean interrupted = false;
+		try {
+			for (Future<T> task : tasks) {
+				while (true) {
+					try {
+						task.get();
+						break;
+					} catch (InterruptedException e) {
+						interrupted = true;
+					}
+				}
+			}
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof RuntimeException) {
+				throw (RuntimeException) e.getCause();
+			}
+			throw new IllegalStateException(e.getCause());
+		} finally {
+			if (interrupted) {
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+	
+	// The IR arguments are only used for the phase statistics.
+	private CompilerOutput assemble(CompilerOutput output, PhaseStats stats, DLXProgram dlxProgram, 
+									Program ssaProgram, DefUseTable defUseTable, RegisterAllocator registerAllocator) {
+		if (options.wants(Artifact.GeneratedDLX)) {
+			output.artifacts.put(Artifact.GeneratedDLX, dlxProgram.toString());
+		}
+		
+		// DLX Assembler:
+		DLXAssembler codeAssembler = new DLXAssembler(dlxProgram);
+		
+		stats.begin("dlx-resolve-labels");
+		codeAssembler.resolveLabels();
+		stats.end(ssaProgram, defUseTable, registerAllocator);
+		
+		stats.begin("dlx-assemble");
+		output.code = codeAssembler.generateCode();
+		stats.end(ssaProgram, defUseTable, registerAllocator);
+		
+		if (options.wants(Artifact.AssembledDLX)) {
+			output.artifacts.put(Artifact.AssembledDLX, dlxProgram.toString());
+		}
+		if (options.wants(Artifact.BinaryText)) {
+			output.artifacts.put(Artifact.BinaryText, toBinaryText(output.code));
+		}
+		
+		if (stats.isEnabled()) {
+			output.stats = stats;
+		}
+		
+		return output;
+	}
+	
+	private TraceSink newTrace(Artifact artifact) {
+		if (options.wants(artifact)) {
+			return new TraceBuffer();
+		}else{
+			return TraceSink.Disabled;
+		}
+	}
+	
+	private void addProgramArtifacts(CompilerOutput output, Program program, Artifact txt, Artifact vcg) {
+		if (options.wants(txt)) {
+			output.artifacts.put(txt, program.toString());
+		}
+		if (options.wants(vcg)) {
+			VCGGraph blocks = new VCGGraph(program.getInstructionVCGNodes());
+			output.artifacts.put(vcg, blocks.toString());
+		}
+	}
+	
+	public static String toBinaryText(int[] code) {
+		char[] text = new char[code.length * 33];
+		int index = 0;
+		
+		for (int instr : code) {
+			for (int i = 31; i >= 0; i--) {
+				text[index++] = (((instr >> i) & 0x1) == 1) ? '1' : '0';
+			}
+			text[index++] = '\n';
+		}
+		
+		return new String(text);
+	}
+	
+}
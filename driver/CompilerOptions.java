@@ -0,0 +1,70 @@
+package driver;
+
+import java.util.*;
+
+public class CompilerOptions {
+	public EnumSet<Artifact> artifacts;
+	public String passes;
+	public boolean collectStats;
+	
+	// Above 1, function bodies are parsed and lowered to SSA on this many threads.
+	public int frontEndThreads;
+	
+	// Above 1, functions are optimized, allocated and lowered to DLX on this
+	// many threads, each on its own as in streaming mode.
+	public int backEndThreads;
+	
+	// Compiles one function at a time to bound memory; see Compiler.stream.
+	public boolean streaming;
+	
+	// Shared between compilations; reuses the object units of functions
+	// compiled before. Also implies compiling one function at a time, unless
+	// an artifact of the whole program is wanted, which skips the cache.
+	public UnitCache unitCache;
+	
+	public CompilerOptions() {
+		artifacts = EnumSet.noneOf(Artifact.class);
+		passes = PassManager.O1;
+		collectStats = false;
+		frontEndThreads = 1;
+		backEndThreads = 1;
+		streaming = false;
+		unitCache = null;
+	}
+	
+	public CompilerOptions(CompilerOptions other) {
+		artifacts = EnumSet.copyOf(other.artifacts);
+		passes = other.passes;
+		collectStats = other.collectStats;
+		frontEndThreads = other.frontEndThreads;
+		backEndThreads = other.backEndThreads;
+		streaming = other.streaming;
+		unitCache = other.unitCache;
+	}
+	
+	// Whether functions are compiled on their own and linked as object units.
+	public boolean compilesRegions() {
+		return requiresRegions() || (unitCache != null && getWholeProgramArtifact() == null);
+	}
+	
+	// Streaming and the parallel back end compile regions whatever artifacts
+	// are wanted.
+	public boolean requiresRegions() {
+		return streaming || backEndThreads > 1;
+	}
+	
+	// The first wanted artifact that needs the whole program, or null.
+	public Artifact getWholeProgramArtifact() {
+		for (Artifact artifact : artifacts) {
+			if (artifact.isWholeProgram()) {
+				return artifact;
+			}
+		}
+		return null;
+	}
+	
+	public boolean wants(Artifact artifact) {
+		return artifacts.contains(artifact);
+	}
+	
+}
@@ -0,0 +1,18 @@
+package driver;
+
+import java.util.*;
+
+public class CompilerOutput {
+	public int[] code;
+	public EnumMap<Artifact, String> artifacts;
+	public int moveInstrCount;
+	public PhaseStats stats;
+	
+	public CompilerOutput() {
+		code = null;
+		artifacts = new EnumMap<>(Artifact.class);
+		moveInstrCount = 0;
+		stats = null;
+	}
+	
+}
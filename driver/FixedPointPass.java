@@ -0,0 +1,58 @@
+package driver;
+
+import java.util.*;
+
+public class FixedPointPass implements Pass {
+	public static final int MaxIterations = 16;
+	
+	private List<Pass> passes;
+	
+	public FixedPointPass(List<Pass> p) {
+		passes = p;
+	}
+	
+	public List<Pass> getPasses() {
+		return Collections.unmodifiableList(passes);
+	}
+	
+	public String getName() {
+		StringBuilder bob = new StringBuilder();
+		
+		bob.append("fixpoint(");
+		for (int i = 0; i < passes.size(); i++) {
+			if (i > 0) bob.append(",");
+			bob.append(passes.get(i).getName());
+		}
+		bob.append(")");
+		
+		return bob.toString();
+	}
+	
+	public EnumSet<Analysis> getRequiredAnalyses() {
+		return EnumSet.noneOf(Analysis.class);
+	}
+	
+	// Members invalidate analyses themselves as they run.
+	public EnumSet<Analysis> getPreservedAnalyses() {
+		return EnumSet.allOf(Analysis.class);
+	}
+	
+	public boolean run(PassContext context) {
+		boolean changed = false;
+		
+		for (int i = 0; i < MaxIterations; i++) {
+			boolean iterationChanged = false;
+			
+			for (Pass pass : passes) {
+				iterationChanged |= context.run(pass);
+			}
+			
+			if (iterationChanged == false) break;
+			
+			changed = true;
+		}
+		
+		return changed;
+	}
+	
+}
@@ -0,0 +1,16 @@
+package driver;
+
+import java.util.*;
+
+public interface Pass {
+	String getName();
+	
+	EnumSet<Analysis> getRequiredAnalyses();
+	
+	// Analyses still valid after the pass changed the program.
+	EnumSet<Analysis> getPreservedAnalyses();
+	
+	// Returns true if the pass changed the program.
+	boolean run(PassContext context);
+	
+}
@@ -0,0 +1,60 @@
+package driver;
+
+import model.ssa.*;
+
+import processor.*;
+
+public class PassContext {
+	private AnalysisManager analyses;
+	private SSAOptimizer optimizer;
+	private DefUseTable optimizerTable;
+	private TraceSink eliminationTrace;
+	private PhaseStats stats;
+	
+	public PassContext(AnalysisManager a, TraceSink trace, PhaseStats s) {
+		analyses = a;
+		optimizer = null;
+		optimizerTable = null;
+		eliminationTrace = trace;
+		stats = s;
+	}
+	
+	public Program getProgram() {
+		return analyses.getProgram();
+	}
+	
+	public AnalysisManager getAnalyses() {
+		return analyses;
+	}
+	
+	public SSAOptimizer getOptimizer() {
+		DefUseTable defUseTable = analyses.getDefUseTable();
+		
+		if (optimizer == null || optimizerTable != defUseTable) {
+			optimizer = new SSAOptimizer(getProgram(), defUseTable, eliminationTrace);
+			optimizerTable = defUseTable;
+		}
+		return optimizer;
+	}
+	
+	public boolean run(Pass pass) {
+		for (Analysis analysis : pass.getRequiredAnalyses()) {
+			analyses.ensure(analysis);
+		}
+		
+		if (pass instanceof FixedPointPass) {
+			return pass.run(this);
+		}
+		
+		stats.begin(pass.getName());
+		boolean changed = pass.run(this);
+		stats.end(getProgram(), analyses.isValid(Analysis.DefUse) ? analyses.getDefUseTable() : null, null);
+		
+		if (changed) {
+			analyses.invalidate(pass.getPreservedAnalyses());
+		}
+		
+		return changed;
+	}
+	
+}
@@ -0,0 +1,184 @@
+package driver;
+
+import java.util.*;
+import java.util.function.*;
+
+public class PassManager {
+	private static class RegisteredPass implements Pass {
+		private String name;
+		private EnumSet<Analysis> requiredAnalyses;
+		private EnumSet<Analysis> preservedAnalyses;
+		private Predicate<PassContext> body;
+		
+		RegisteredPass(String n, EnumSet<Analysis> r, EnumSet<Analysis> p, Predicate<PassContext> b) {
+			name = n;
+			requiredAnalyses = r;
+			preservedAnalyses = p;
+			body = b;
+		}
+		
+		public String getName() {
+			return name;
+		}
+		
+		public EnumSet<Analysis> getRequiredAnalyses() {
+			return requiredAnalyses;
+		}
+		
+		public EnumSet<Analysis> getPreservedAnalyses() {
+			return preservedAnalyses;
+		}
+		
+		public boolean run(PassContext context) {
+			return body.test(context);
+		}
+	}
+	
+	private static final LinkedHashMap<String, Pass> registry = new LinkedHashMap<>();
+	
+	// The optimizer patches the def-use table as it eliminates instructions
+	// and never changes the control flow graph.
+	static {
+		EnumSet<Analysis> optimizerPreserves = EnumSet.of(Analysis.DefUse, Analysis.Dominators);
+		
+		register("copy-propagation", EnumSet.of(Analysis.DefUse), optimizerPreserves,
+				 ctx -> ctx.getOptimizer().removeMoveInstructions());
+		register("cse", EnumSet.of(Analysis.DefUse, Analysis.Dominators), optimizerPreserves,
+				 ctx -> ctx.getOptimizer().removeCommonSubexpressions(ctx.getAnalyses().getDominatorTree()));
+		register("dce", EnumSet.of(Analysis.DefUse), optimizerPreserves,
+				 ctx -> ctx.getOptimizer().removeUnusedInstructions());
+	}
+	
+	// The back end does not lower SSA move instructions, so every pipeline
+	// needs this pass; it is added in front when a pipeline leaves it out.
+	public static final String RequiredPass = "copy-propagation";
+	
+	public static final String O0 = RequiredPass;
+	public static final String O1 = "copy-propagation,cse";
+	public static final String O2 = "copy-propagation,fixpoint(cse,dce)";
+	
+	public static synchronized void register(String name, EnumSet<Analysis> requiredAnalyses, EnumSet<Analysis> preservedAnalyses,
+											 Predicate<PassContext> body) {
+		registry.put(name, new RegisteredPass(name, requiredAnalyses, preservedAnalyses, body));
+	}
+	
+	public static synchronized Set<String> getPassNames() {
+		return Collections.unmodifiableSet(new LinkedHashSet<>(registry.keySet()));
+	}
+	
+	public static String preset(int level) {
+		switch (level) {
+		case 0:
+			return O0;
+		case 1:
+			return O1;
+		case 2:
+			return O2;
+		default:
+			throw new IllegalArgumentException("Unknown optimization level: " + level);
+		}
+	}
+	
+	private List<Pass> pipeline;
+	
+	public PassManager(String spec) {
+		pipeline = new ArrayList<>(parse(spec));
+		
+		if (contains(pipeline, RequiredPass) == false) {
+			pipeline.add(0, parseItem(RequiredPass, new int[] {0}));
+		}
+	}
+	
+	private static boolean contains(List<Pass> passes, String name) {
+		for (Pass pass : passes) {
+			if (pass.getName().equals(name)) {
+				return true;
+			}
+			if (pass instanceof FixedPointPass && contains(((FixedPointPass)pass).getPasses(), name)) {
+				return true;
+			}
+		}
+		return false;
+	}
+	
+	public List<Pass> getPipeline() {
+		return Collections.unmodifiableList(pipeline);
+	}
+	
+	public boolean run(PassContext context) {
+		boolean changed = false;
+		
+		for (Pass pass : pipeline) {
+			changed |= context.run(pass);
+		}
+		
+		return changed;
+	}
+	
+	// Spec grammar: list = [item {"," item}], item = name | "fixpoint(" list ")"
+	public static List<Pass> parse(String spec) {
+		int[] position = {0};
+		String s = spec.replaceAll("\\s", "");
+		
+		List<Pass> passes = parseList(s, position);
+		
+		if (position[0] != s.length()) {
+			throw new IllegalArgumentException("Unexpected '" + s.charAt(position[0]) + "' in pass pipeline: " + spec);
+		}
+		
+		return passes;
+	}
+	
+	private static List<Pass> parseList(String s, int[] position) {
+		ArrayList<Pass> passes = new ArrayList<>();
+		
+		if (position[0] == s.length() || s.charAt(position[0]) == ')') {
+			return passes;
+		}
+		
+		passes.add(parseItem(s, position));
+		
+		while (position[0] < s.length() && s.charAt(position[0]) == ',') {
+			position[0]++;
+			passes.add(parseItem(s, position));
+		}
+		
+		return passes;
+	}
+	
+	private static Pass parseItem(String s, int[] position) {
+		int start = position[0];
+		while (position[0] < s.length() &&
+			   s.charAt(position[0]) != ',' &&
+			   s.charAt(position[0]) != '(' &&
+			   s.charAt(position[0]) != ')') {
+			position[0]++;
+		}
+		
+		String name = s.substring(start, position[0]);
+		
+		if (name.equals("fixpoint") && position[0] < s.length() && s.charAt(position[0]) == '(') {
+			position[0]++;
+			
+			List<Pass> passes = parseList(s, position);
+			
+			if (position[0] >= s.length() || s.charAt(position[0]) != ')') {
+				throw new IllegalArgumentException("Missing ')' in pass pipeline: " + s);
+			}
+			position[0]++;
+			
+			return new FixedPointPass(passes);
+		}
+		
+		synchronized (PassManager.class) {
+			Pass pass = registry.get(name);
+			
+			if (pass == null) {
+				throw new IllegalArgumentException("Unknown pass: " + name);
+			}
+			
+			return pass;
+		}
+	}
+	
+}
@@ -0,0 +1,123 @@
+package driver;
+
+import java.lang.management.*;
+import java.util.*;
+
+import model.ssa.*;
+
+import processor.*;
+
+public class PhaseStats {
+	public static class IRSize {
+		public int blocks;
+		public int instructions;
+		public int defUseEntries;
+		public int interferenceNodes;
+		public int interferenceEdges;
+	}
+	
+	public static class Phase {
+		public String name;
+		public long nanos;
+		public long allocatedBytes;
+		public IRSize before;
+		public IRSize after;
+	}
+	
+	private static final com.sun.management.ThreadMXBean threadBean = threadBean();
+	
+	private boolean enabled;
+	private ArrayList<Phase> phases;
+	
+	private IRSize current;
+	private Phase active;
+	private long startNanos;
+	private long startBytes;
+	
+	public PhaseStats(boolean enabled) {
+		this.enabled = enabled;
+		phases = new ArrayList<>();
+		current = new IRSize();
+		active = null;
+	}
+	
+	public boolean isEnabled() {
+		return enabled;
+	}
+	
+	public List<Phase> getPhases() {
+		return Collections.unmodifiableList(phases);
+	}
+	
+	// Adds the phases of a part compiled on another thread.
+	public void merge(PhaseStats other) {
+		phases.addAll(other.phases);
+	}
+	
+	public void begin(String name) {
+		if (enabled == false) {
+			return;
+		}
+		if (active != null) {
+			throw new IllegalStateException("Phase " + active.name + " still running");
+		}
+		
+		active = new Phase();
+		active.name = name;
+		active.before = current;
+		
+		startBytes = allocatedBytes();
+		startNanos = System.nanoTime();
+	}
+	
+	public void end(Program program, DefUseTable defUseTable, RegisterAllocator registerAllocator) {
+		if (enabled == false) {
+			return;
+		}
+		if (active == null) {
+			throw new IllegalStateException("No phase running");
+		}
+		
+		active.nanos = System.nanoTime() - startNanos;
+		active.allocatedBytes = allocatedBytes() - startBytes;
+		
+		current = new IRSize();
+		if (program != null) {
+			current.blocks = program.getBasicBlocks().size();
+			current.instructions = program.getInstructionCount();
+		}
+		if (defUseTable != null) {
+			current.defUseEntries = defUseTable.getEntryCount();
+		}
+		if (registerAllocator != null) {
+			current.interferenceNodes = registerAllocator.getInterferenceNodeCount();
+			current.interferenceEdges = registerAllocator.getInterferenceEdgeCount();
+		}
+		active.after = current;
+		
+		phases.add(active);
+		active = null;
+	}
+	
+	private static com.sun.management.ThreadMXBean threadBean() {
+		ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+		
+		if (bean instanceof com.sun.management.ThreadMXBean) {
+			com.sun.management.ThreadMXBean sunBean = (com.sun.management.ThreadMXBean)bean;
+			
+			if (sunBean.isThreadAllocatedMemorySupported()) {
+				sunBean.setThreadAllocatedMemoryEnabled(true);
+				return sunBean;
+			}
+		}
+		return null;
+	}
+	
+	private static long allocatedBytes() {
+		if (threadBean == null) {
+			return 0;
+		}
+		return threadBean.getThreadAllocatedBytes(Thread.currentThread().getId());
+	}
+	
+}
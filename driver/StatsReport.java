@@ -0,0 +1,159 @@
+package driver;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+
+public class StatsReport {
+	public static class Summary {
+		public String phase;
+		public int count;
+		public long p50Nanos;
+		public long p99Nanos;
+		public long p50Bytes;
+		public long p99Bytes;
+	}
+	
+	private LinkedHashMap<String, PhaseStats> programs;
+	
+	public StatsReport() {
+		programs = new LinkedHashMap<>();
+	}
+	
+	public void add(String program, PhaseStats stats) {
+		programs.put(program, stats);
+	}
+	
+	public List<Summary> summarize() {
+		LinkedHashMap<String, ArrayList<PhaseStats.Phase>> byPhase = new LinkedHashMap<>();
+		
+		for (PhaseStats stats : programs.values()) {
+			for (PhaseStats.Phase phase : stats.getPhases()) {
+				byPhase.computeIfAbsent(phase.name, k -> new ArrayList<>()).add(phase);
+			}
+		}
+		
+		ArrayList<Summary> summaries = new ArrayList<>();
+		
+		for (Map.Entry<String, ArrayList<PhaseStats.Phase>> entry : byPhase.entrySet()) {
+			ArrayList<PhaseStats.Phase> phases = entry.getValue();
+			long[] nanos = new long[phases.size()];
+			long[] bytes = new long[phases.size()];
+			
+			for (int i = 0; i < phases.size(); i++) {
+				nanos[i] = phases.get(i).nanos;
+				bytes[i] = phases.get(i).allocatedBytes;
+			}
+			Arrays.sort(nanos);
+			Arrays.sort(bytes);
+			
+			Summary summary = new Summary();
+			summary.phase = entry.getKey();
+			summary.count = phases.size();
+			summary.p50Nanos = percentile(nanos, 50);
+			summary.p99Nanos = percentile(nanos, 99);
+			summary.p50Bytes = percentile(bytes, 50);
+			summary.p99Bytes = percentile(bytes, 99);
+			
+			summaries.add(summary);
+		}
+		
+		return summaries;
+	}
+	
+	// Nearest-rank percentile of an ascending array.
+	private static long percentile(long[] sorted, int p) {
+		int rank = (int)Math.ceil(p / 100.0 * sorted.length);
+		
+		return sorted[Math.max(0, rank - 1)];
+	}
+	
+	public String toCSV() {
+		StringBuilder bob = new StringBuilder();
+		
+		bob.append("program,phase,nanos,allocatedBytes");
+		for (String when : new String[] {"Before", "After"}) {
+			bob.append(",blocks" + when);
+			bob.append(",instructions" + when);
+			bob.append(",defUseEntries" + when);
+			bob.append(",interferenceNodes" + when);
+			bob.append(",interferenceEdges" + when);
+		}
+		bob.append("\n");
+		
+		for (Map.Entry<String, PhaseStats> entry : programs.entrySet()) {
+			for (PhaseStats.Phase phase : entry.getValue().getPhases()) {
+				bob.append(entry.getKey()).append(',');
+				bob.append(phase.name).append(',');
+				bob.append(phase.nanos).append(',');
+				bob.append(phase.allocatedBytes);
+				for (PhaseStats.IRSize size : new PhaseStats.IRSize[] {phase.before, phase.after}) {
+					bob.append(',').append(size.blocks);
+					bob.append(',').append(size.instructions);
+					bob.append(',').append(size.defUseEntries);
+					bob.append(',').append(size.interferenceNodes);
+					bob.append(',').append(size.interferenceEdges);
+				}
+				bob.append("\n");
+			}
+		}
+		
+		return bob.toString();
+	}
+	
+	public String toJSON() {
+		StringBuilder bob = new StringBuilder();
+		
+		bob.append("{\n  \"programs\": [");
+		boolean firstProgram = true;
+		for (Map.Entry<String, PhaseStats> entry : programs.entrySet()) {
+			bob.append(firstProgram ? "\n" : ",\n");
+			firstProgram = false;
+			
+			bob.append("    {\"name\": \"" + escape(entry.getKey()) + "\", \"phases\": [");
+			boolean firstPhase = true;
+			for (PhaseStats.Phase phase : entry.getValue().getPhases()) {
+				bob.append(firstPhase ? "\n" : ",\n");
+				firstPhase = false;
+				
+				bob.append(String.format("      {\"phase\": \"%s\", \"nanos\": %d, \"allocatedBytes\": %d, \"before\": %s, \"after\": %s}",
+										 escape(phase.name), phase.nanos, phase.allocatedBytes,
+										 toJSON(phase.before), toJSON(phase.after)));
+			}
+			bob.append("\n    ]}");
+		}
+		bob.append("\n  ],\n  \"summary\": [");
+		
+		boolean firstSummary = true;
+		for (Summary summary : summarize()) {
+			bob.append(firstSummary ? "\n" : ",\n");
+			firstSummary = false;
+			
+			bob.append(String.format("    {\"phase\": \"%s\", \"count\": %d, \"p50Nanos\": %d, \"p99Nanos\": %d, \"p50Bytes\": %d, \"p99Bytes\": %d}",
+									 escape(summary.phase), summary.count,
+									 summary.p50Nanos, summary.p99Nanos,
+									 summary.p50Bytes, summary.p99Bytes));
+		}
+		bob.append("\n  ]\n}\n");
+		
+		return bob.toString();
+	}
+	
+	private static String toJSON(PhaseStats.IRSize size) {
+		return String.format("{\"blocks\": %d, \"instructions\": %d, \"defUseEntries\": %d, \"interferenceNodes\": %d, \"interferenceEdges\": %d}",
+							 size.blocks, size.instructions, size.defUseEntries,
+							 size.interferenceNodes, size.interferenceEdges);
+	}
+	
+	private static String escape(String s) {
+		return s.replace("\\", "\\\\").replace("\"", "\\\"");
+	}
+	
+	public void write(String path) throws IOException {
+		String contents = path.endsWith(".json") ? toJSON() : toCSV();
+		
+		Files.write(Paths.get(path), contents.getBytes(StandardCharsets.UTF_8));
+	}
+	
+}
@@ -0,0 +1,384 @@
+package driver;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.nio.file.attribute.FileTime;
+import java.security.*;
+import java.util.*;
+
+import model.dlx.*;
+import model.syntax.*;
+
+import processor.*;
+
+// Object units of functions (and main) compiled in region mode, so a
+// function that is the same in another program, or in the next version of
+// this one, is only linked. The key is a SHA-256 digest of everything its
+// code depends on: the compiler version and passes, the function's name
+// and syntax tree, and for every symbol it uses, the symbol's kind and
+// offset or, for globals and functions, its name and shape. Symbol IDs are
+// replaced by the order they first appear in, and global offsets are left
+// to the linker, so neither ties an entry to one program.
+//
+// Entries are kept in memory up to a capacity, least recently used first
+// out, and with a directory also on disk, which is bounded the same way.
+public class UnitCache {
+	private static final String EntrySuffix = ".unit";
+	
+	public static class Entry {
+		public final ObjectUnit unit;
+		public final int moveInstrCount;
+		
+		public Entry(ObjectUnit u, int m) {
+			unit = u;
+			moveInstrCount = m;
+		}
+		
+		long getSize() {
+			return 64 + unit.getSize() * 4 + unit.getRelocations().size() * 32;
+		}
+	}
+	
+	private long capacity;
+	private long size;
+	private LinkedHashMap<String, Entry> entries;
+	
+	private Path directory;
+	private long diskCapacity;
+	private long diskSize;
+	private LinkedHashMap<String, Long> files;
+	
+	private long hitCount;
+	private long missCount;
+	
+	public UnitCache(long capacity) {
+		this.capacity = capacity;
+		this.size = 0;
+		this.entries = new LinkedHashMap<>(16, 0.75f, true);
+	}
+	
+	public UnitCache(long capacity, String directoryPath, long diskCapacity) throws IOException {
+		this(capacity);
+		
+		this.directory = Paths.get(directoryPath);
+		this.diskCapacity = diskCapacity;
+		this.diskSize = 0;
+		this.files = new LinkedHashMap<>(16, 0.75f, true);
+		
+		Files.createDirectories(directory);
+		
+		ArrayList<Path> paths = new ArrayList<>();
+		try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, "*" + EntrySuffix)) {
+			for (Path file : stream) {
+				paths.add(file);
+			}
+		}
+		
+		HashMap<Path, FileTime> times = new HashMap<>();
+		for (Path file : paths) {
+			times.put(file, Files.getLastModifiedTime(file));
+		}
+		paths.sort((a, b) -> times.get(a).compareTo(times.get(b)));
+		
+		for (Path file : paths) {
+			String name = file.getFileName().toString();
+			long length = Files.size(file);
+			
+			files.put(name.substring(0, name.length() - EntrySuffix.length()), length);
+			diskSize += length;
+		}
+		
+		evictFiles();
+	}
+	
+	public synchronized long getHitCount() {
+		return hitCount;
+	}
+	
+	public synchronized long getMissCount() {
+		return missCount;
+	}
+	
+	// Main for a null function. Memory has to be allocated already.
+	public static String key(CompilerOptions options, SymbolTable table, Computation computation, FunctionDeclaration function) {
+		MessageDigest digest;
+		try {
+			digest = MessageDigest.getInstance("SHA-256");
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+		
+		HashMap<Integer, Integer> ordinals = new HashMap<>();
+		
+		update(digest, Compiler.Version);
+		update(digest, options.passes);
+		
+		if (function == null) {
+			update(digest, "main");
+			
+			// Globals of main stay in registers only without functions.
+			update(digest, computation.functions.size() > 0 ? 1 : 0);
+			
+			hashNode(digest, table, computation.arena, computation.body, ordinals);
+			
+		}else{
+			update(digest, table.IDToName(function.nameID));
+			hashSymbol(digest, table, function.nameID, ordinals);
+			for (int id : function.parameterIDs) {
+				hashSymbol(digest, table, id, ordinals);
+			}
+			
+			hashNode(digest, table, function.arena, function.body, ordinals);
+		}
+		
+		StringBuilder bob = new StringBuilder();
+		for (byte b : digest.digest()) {
+			bob.append(String.format("%02x", b));
+		}
+		return bob.toString();
+	}
+	
+	private static void hashNode(MessageDigest digest, SymbolTable table, SyntaxArena arena, int node,
+								 HashMap<Integer, Integer> ordinals) {
+		int kind = arena.getKind(node);
+		
+		update(digest, kind);
+		update(digest, arena.getOp(node));
+		
+		if (kind == SyntaxArena.DesignatorNode || kind == SyntaxArena.CallNode) {
+			hashSymbol(digest, table, arena.getValue(node), ordinals);
+		}else if (kind == SyntaxArena.ConstantNode) {
+			update(digest, arena.getValue(node));
+		}
+		
+		for (int c = arena.getFirstChild(node); c != -1; c = arena.getNextSibling(c)) {
+			hashNode(digest, table, arena, c, ordinals);
+		}
+		update(digest, -1);
+	}
+	
+	private static void hashSymbol(MessageDigest digest, SymbolTable table, int id, HashMap<Integer, Integer> ordinals) {
+		Integer ordinal = ordinals.get(id);
+		if (ordinal != null) {
+			update(digest, ordinal);
+			return;
+		}
+		
+		ordinals.put(id, ordinals.size());
+		update(digest, ordinals.size() - 1);
+		
+		int depth = table.getDepth(id);
+		boolean rel = table.hasRelativeOffset(id);
+		
+		update(digest, depth);
+		update(digest, rel ? 1 : 0);
+		
+		if (table.isFunction(id) || table.isProcedure(id)) {
+			update(digest, table.isFunction(id) ? 1 : 2);
+			update(digest, table.IDToName(id));
+			update(digest, table.getNumberOfParameters(id));
+			
+		}else{
+			update(digest, table.isArray(id) ? 3 : 4);
+			
+			if (table.isArray(id)) {
+				int[] dimensions = table.getArrayDimensions(id);
+				update(digest, dimensions.length);
+				for (int dimension : dimensions) {
+					update(digest, dimension);
+				}
+			}
+			
+			if (depth == 0 && rel == false) {
+				update(digest, table.IDToName(id));
+			}else{
+				update(digest, table.getOffset(id));
+			}
+		}
+	}
+	
+	private static void update(MessageDigest digest, int value) {
+		digest.update((byte)(value >>> 24));
+		digest.update((byte)(value >>> 16));
+		digest.update((byte)(value >>> 8));
+		digest.update((byte)value);
+	}
+	
+	private static void update(MessageDigest digest, String s) {
+		digest.update(s.getBytes(StandardCharsets.UTF_8));
+		digest.update((byte)0);
+	}
+	
+	public Entry lookup(String key) {
+		synchronized (this) {
+			Entry entry = entries.get(key);
+			
+			if (entry != null || directory == null || files.get(key) == null) {
+				if (entry != null) hitCount++;
+				else missCount++;
+				
+				return entry;
+			}
+		}
+		
+		Entry entry = read(key);
+		
+		synchronized (this) {
+			if (entry != null) {
+				hitCount++;
+				put(key, entry);
+			}else{
+				missCount++;
+			}
+		}
+		
+		return entry;
+	}
+	
+	// Disk failures only cost the entry its second tier.
+	public void store(String key, Entry entry) {
+		synchronized (this) {
+			put(key, entry);
+		}
+		
+		if (directory != null) {
+			write(key, entry);
+		}
+	}
+	
+	private void put(String key, Entry entry) {
+		Entry previous = entries.put(key, entry);
+		if (previous != null) {
+			size -= previous.getSize();
+		}
+		size += entry.getSize();
+		
+		Iterator<Map.Entry<String, Entry>> iterator = entries.entrySet().iterator();
+		
+		while (size > capacity && iterator.hasNext()) {
+			size -= iterator.next().getValue().getSize();
+			iterator.remove();
+		}
+	}
+	
+	private Entry read(String key) {
+		Path file = directory.resolve(key + EntrySuffix);
+		
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+			int moveInstrCount = in.readInt();
+			String name = in.readUTF();
+			
+			int[] code = new int[in.readInt()];
+			for (int i = 0; i < code.length; i++) {
+				code[i] = in.readInt();
+			}
+			
+			int relocationCount = in.readInt();
+			ArrayList<Relocation> relocations = new ArrayList<>(relocationCount);
+			for (int i = 0; i < relocationCount; i++) {
+				Relocation.Kind kind = Relocation.Kind.values()[in.readByte()];
+				String symbol = in.readBoolean() ? in.readUTF() : null;
+				
+				Relocation relocation = new Relocation(kind, symbol, in.readInt());
+				relocation.index = in.readInt();
+				relocations.add(relocation);
+			}
+			
+			Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis()));
+			
+			return new Entry(new ObjectUnit(name, code, relocations), moveInstrCount);
+			
+		} catch (IOException | RuntimeException e) {
+			// Evicted by another worker or damaged; either way it is a miss.
+			removeFile(key);
+			return null;
+		}
+	}
+	
+	private void write(String key, Entry entry) {
+		Path file = directory.resolve(key + EntrySuffix);
+		long length;
+		
+		try {
+			Path temp = Files.createTempFile(directory, key, ".tmp");
+			
+			try {
+				try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+					ObjectUnit unit = entry.unit;
+					
+					out.writeInt(entry.moveInstrCount);
+					out.writeUTF(unit.getName());
+					
+					out.writeInt(unit.getSize());
+					for (int instr : unit.getCode()) {
+						out.writeInt(instr);
+					}
+					
+					out.writeInt(unit.getRelocations().size());
+					for (Relocation relocation : unit.getRelocations()) {
+						out.writeByte(relocation.kind.ordinal());
+						out.writeBoolean(relocation.symbol != null);
+						if (relocation.symbol != null) {
+							out.writeUTF(relocation.symbol);
+						}
+						out.writeInt(relocation.addend);
+						out.writeInt(relocation.index);
+					}
+				}
+				
+				length = Files.size(temp);
+				
+				Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+				
+			} finally {
+				Files.deleteIfExists(temp);
+			}
+			
+		} catch (IOException e) {
+			return;
+		}
+		
+		synchronized (this) {
+			Long previous = files.put(key, length);
+			if (previous != null) {
+				diskSize -= previous;
+			}
+			diskSize += length;
+			
+			evictFiles();
+		}
+	}
+	
+	private synchronized void removeFile(String key) {
+		Long length = files.remove(key);
+		
+		if (length != null) {
+			diskSize -= length;
+			
+			try {
+				Files.deleteIfExists(directory.resolve(key + EntrySuffix));
+			} catch (IOException e) {
+				// Left for the next eviction pass.
+			}
+		}
+	}
+	
+	private synchronized void evictFiles() {
+		Iterator<Map.Entry<String, Long>> iterator = files.entrySet().iterator();
+		
+		while (diskSize > diskCapacity && iterator.hasNext()) {
+			Map.Entry<String, Long> entry = iterator.next();
+			
+			try {
+				Files.deleteIfExists(directory.resolve(entry.getKey() + EntrySuffix));
+			} catch (IOException e) {
+				continue;
+			}
+			
+			diskSize -= entry.getValue();
+			iterator.remove();
+		}
+	}
+	
+}
@@ -0,0 +1,15 @@
+package jfr;
+
+import jdk.jfr.*;
+
+@Name("compiler.Assembly")
+@Label("DLX Assembly")
+public class AssemblyEvent extends PassEvent {
+	@Label("Step")
+	@Description("resolveLabels, generateCode, assembleUnit or link")
+	public String step;
+	
+	@Label("Instructions")
+	public int instructions;
+	
+}
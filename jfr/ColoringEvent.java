@@ -0,0 +1,17 @@
+package jfr;
+
+import jdk.jfr.*;
+
+@Name("compiler.Coloring")
+@Label("Register Coloring")
+public class ColoringEvent extends PassEvent {
+	@Label("Values")
+	public int values;
+	
+	@Label("Colors Used")
+	public int colorsUsed;
+	
+	@Label("Moves Inserted")
+	public int movesInserted;
+	
+}
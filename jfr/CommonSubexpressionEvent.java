@@ -0,0 +1,14 @@
+package jfr;
+
+import jdk.jfr.*;
+
+@Name("compiler.CommonSubexpressionElimination")
+@Label("Common Subexpression Elimination")
+public class CommonSubexpressionEvent extends PassEvent {
+	@Label("Instructions Before")
+	public int instructionsBefore;
+	
+	@Label("Eliminated Instructions")
+	public int eliminated;
+	
+}
@@ -0,0 +1,14 @@
+package jfr;
+
+import jdk.jfr.*;
+
+@Name("compiler.CopyPropagation")
+@Label("Copy Propagation")
+public class CopyPropagationEvent extends PassEvent {
+	@Label("Instructions Before")
+	public int instructionsBefore;
+	
+	@Label("Eliminated Instructions")
+	public int eliminated;
+	
+}
@@ -0,0 +1,14 @@
+package jfr;
+
+import jdk.jfr.*;
+
+@Name("compiler.DLXGeneration")
+@Label("DLX Generation")
+public class DLXGenerationEvent extends PassEvent {
+	@Label("SSA Instructions")
+	public int ssaInstructions;
+	
+	@Label("DLX Instructions")
+	public int dlxInstructions;
+	
+}
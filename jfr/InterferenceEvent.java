@@ -0,0 +1,17 @@
+package jfr;
+
+import jdk.jfr.*;
+
+@Name("compiler.Interference")
+@Label("Interference Graph Construction")
+public class InterferenceEvent extends PassEvent {
+	@Label("Instructions")
+	public int instructions;
+	
+	@Label("Nodes")
+	public int nodes;
+	
+	@Label("Edges")
+	public int edges;
+	
+}
@@ -0,0 +1,14 @@
+package jfr;
+
+import jdk.jfr.*;
+
+@Name("compiler.Parse")
+@Label("Parse")
+public class ParseEvent extends PassEvent {
+	@Label("Functions")
+	public int functions;
+	
+	@Label("Statements")
+	public int statements;
+	
+}
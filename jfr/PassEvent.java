@@ -0,0 +1,33 @@
+package jfr;
+
+import jdk.jfr.*;
+
+// Events are allocated and begun unconditionally; attributes are only
+// computed behind shouldCommit(), so passes pay next to nothing while no
+// recording is running.
+@Category({"DLX Compiler", "Passes"})
+@StackTrace(false)
+public abstract class PassEvent extends Event {
+	private static final ThreadLocal<String> currentUnit = new ThreadLocal<>();
+	
+	@Label("Unit")
+	@Description("Name of the program being compiled")
+	public String unit;
+	
+	@Label("Function")
+	@Description("Function the pass ran on, empty for whole-program passes")
+	public String function;
+	
+	public static String currentUnit() {
+		return currentUnit.get();
+	}
+	
+	public static void enterUnit(String name) {
+		currentUnit.set(name);
+	}
+	
+	public static void exitUnit() {
+		currentUnit.remove();
+	}
+	
+}
@@ -0,0 +1,14 @@
+package jfr;
+
+import jdk.jfr.*;
+
+@Name("compiler.SSAGeneration")
+@Label("SSA Generation")
+public class SSAGenerationEvent extends PassEvent {
+	@Label("Blocks")
+	public int blocks;
+	
+	@Label("Instructions")
+	public int instructions;
+	
+}
@@ -132,6 +132,9 @@ public class DLXInstruction {
 	public String arg1;
 	public String arg2;
 	
+	// Set when arg2 has to be patched by the linker.
+	public Relocation relocation;
+	
 	public DLXInstruction(int number) {
 		this.number = number;
 	}
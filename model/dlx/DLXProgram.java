@@ -13,6 +13,14 @@ public class DLXProgram {
 		return blocks;
 	}
 	
+	public int getInstructionCount() {
+		int count = 0;
+		for (DLXBlock block : blocks) {
+			count += block.getInstructions().size();
+		}
+		return count;
+	}
+	
 	public String toString() {
 		StringBuilder bob = new StringBuilder();
 		
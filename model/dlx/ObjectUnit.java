@@ -0,0 +1,49 @@
+package model.dlx;
+
+import java.util.*;
+
+// Machine code of one function, or main, assembled on its own. Branches
+// within the unit are resolved; everything depending on where other units
+// are placed or on the memory layout is left to the linker.
+public class ObjectUnit {
+	private String name;
+	private int[] code;
+	private ArrayList<Relocation> relocations;
+	
+	public ObjectUnit(String n, int[] c, ArrayList<Relocation> r) {
+		name = n;
+		code = c;
+		relocations = r;
+	}
+	
+	// The symbol the unit defines.
+	public String getName() {
+		return name;
+	}
+	
+	public int[] getCode() {
+		return code;
+	}
+	
+	public int getSize() {
+		return code.length;
+	}
+	
+	public List<Relocation> getRelocations() {
+		return Collections.unmodifiableList(relocations);
+	}
+	
+	// The symbols of one kind the unit refers to.
+	public Set<String> getReferencedSymbols(Relocation.Kind kind) {
+		LinkedHashSet<String> symbols = new LinkedHashSet<>();
+		
+		for (Relocation relocation : relocations) {
+			if (relocation.kind == kind && relocation.symbol != null) {
+				symbols.add(relocation.symbol);
+			}
+		}
+		
+		return symbols;
+	}
+	
+}
@@ -0,0 +1,27 @@
+package model.dlx;
+
+// An immediate field that is only known once object units are linked:
+//   Call         offset from the BSR to the start of function symbol
+//   Global       offset of global variable symbol from gp, plus addend
+//   GlobalSpace  size of the global area
+public class Relocation {
+	public enum Kind {
+		Call,
+		Global,
+		GlobalSpace
+	}
+	
+	public Kind kind;
+	public String symbol;
+	public int addend;
+	
+	// Instruction in the object unit, set by the assembler.
+	public int index;
+	
+	public Relocation(Kind k, String s, int a) {
+		kind = k;
+		symbol = s;
+		addend = a;
+	}
+	
+}
@@ -5,7 +5,7 @@ import java.util.*;
 public class ArgumentsValue extends Value {
 	private ArrayList<Value> arguments;
 	
-	public ArgumentsValue(List<Value> args) {
+	ArgumentsValue(List<Value> args) {
 		arguments = new ArrayList<>(args);
 	}
 	
@@ -22,6 +22,22 @@ public class ArgumentsValue extends Value {
 		}
 	}
 	
+	public void replace(Value oldArg, Value newArg) {
+		for (int i = 0; i < arguments.size(); i++) {
+			if (oldArg.equals(arguments.get(i))) {
+				arguments.set(i, newArg);
+			}
+		}
+	}
+	
+	Value rebase(ValuePool pool, int instructionOffset, int blockOffset) {
+		ArrayList<Value> args = new ArrayList<>(arguments.size());
+		for (Value arg : arguments) {
+			args.add((arg != null) ? arg.rebase(pool, instructionOffset, blockOffset) : null);
+		}
+		return pool.arguments(args);
+	}
+	
 	public int hashCode() {
 		int code = 0;
 		for (Value arg : arguments) {
@@ -6,7 +6,11 @@ public class BasicBlock {
 	private Program program;
 	private int blockNumber;
 	private int depth;
-	private ArrayList<Instruction> instructions;
+	private int firstInstruction;
+	private int lastInstruction;
+	private int instructionCount;
+	private int[] flatInstructions;
+	private InstructionList instructionList;
 	private boolean ifTopBlock;
 	private boolean ifFollowBlock;
 	private boolean whileTopBlock;
@@ -16,13 +20,21 @@ public class BasicBlock {
 		program = pgm;
 		blockNumber = num;
 		depth = d;
-		instructions = new ArrayList<>();
+		firstInstruction = -1;
+		lastInstruction = -1;
+		instructionCount = 0;
+		flatInstructions = null;
+		instructionList = new InstructionList();
 		ifTopBlock = false;
 		ifFollowBlock = false;
 		whileTopBlock = false;
 		whileFollowBlock = false;
 	}
 	
+	public Program getProgram() {
+		return program;
+	}
+	
 	public int getBlockNumber() {
 		return blockNumber;
 	}
@@ -31,59 +43,166 @@ public class BasicBlock {
 		return depth;
 	}
 	
+	// Indexed through a flat copy that is rebuilt after changes.
 	public List<Instruction> getInstructions() {
-		return Collections.unmodifiableList(instructions);
+		return instructionList;
+	}
+	
+	public int getInstructionCount() {
+		return instructionCount;
+	}
+	
+	public Instruction getFirstInstruction() {
+		return program.view(firstInstruction);
 	}
 	
-	public int getIndexOfLastNonBranchInstruction() {
-		for (int i = instructions.size(); i > 0; i--) {
-			Instruction instr = instructions.get(i - 1);
+	public Instruction getLastInstruction() {
+		return program.view(lastInstruction);
+	}
+	
+	// The first of the branches the block ends with, or null.
+	public Instruction getFirstTrailingBranch() {
+		Instruction branch = null;
+		
+		for (Instruction instr = getLastInstruction(); instr != null; instr = instr.getPrevious()) {
+			if (instr.isBranch() == false) break;
 			
-			if (instr.isBranch() == false) return i;
+			branch = instr;
 		}
-		return 0;
+		return branch;
 	}
 	
 	public boolean endsWithEndInstruction() {
-		if (instructions.size() == 0) return false;
+		if (lastInstruction == -1) return false;
 		
-		Instruction lastInstr = instructions.get(instructions.size() - 1);
-		
-		return lastInstr.getOperator() == Instruction.Operator.end;
+		return getLastInstruction().getOperator() == Instruction.Operator.end;
 	}
 	
 	public Instruction addInstruction() {
-		Instruction instr = new Instruction(this, program.instructionCount++);
-		
-		instructions.add(instr);
-		program.instructions.put(instr.getNumber(), instr);
-		
-		return instr;
+		return insert(program.instructionCount++, -1);
 	}
 	
 	public Instruction addPlaceholderInstruction(CodeGenerator gen) {
-		Instruction instr = new Instruction(this, program.instructionCount++, gen);
-		
-		instructions.add(instr);
-		program.instructions.put(instr.getNumber(), instr);
+		Instruction instr = insert(program.instructionCount++, -1);
+		instr.setOperator(Instruction.Operator.call);
 		
 		return instr;
 	}
 	
-	public Instruction addInstruction(int index) {
-		Instruction instr = new Instruction(this, program.instructionCount++);
+	// Appends for a null successor.
+	public Instruction addInstructionBefore(Instruction successor) {
+		return insert(program.instructionCount++, (successor != null) ? successor.getNumber() : -1);
+	}
+	
+	void appendRebased(Instruction source, int instructionOffset, int blockOffset) {
+		Instruction instr = insert(source.getNumber() + instructionOffset, -1);
+		instr.setOperator(source.getOperator());
 		
-		instructions.add(index, instr);
-		program.instructions.put(instr.getNumber(), instr);
+		for (int i = 0; i < 3; i++) {
+			Value arg = source.getArg(i);
+			
+			instr.setArg(i, (arg != null) ? arg.rebase(program.getValues(), instructionOffset, blockOffset) : null);
+		}
+	}
+	
+	private Instruction insert(int number, int successor) {
+		InstructionArena arena = program.arena;
+		int predecessor = (successor != -1) ? arena.previous[successor] : lastInstruction;
 		
-		return instr;
+		arena.add(number, blockNumber);
+		arena.previous[number] = predecessor;
+		arena.next[number] = successor;
+		
+		if (predecessor != -1) arena.next[predecessor] = number;
+		else firstInstruction = number;
+		
+		if (successor != -1) arena.previous[successor] = number;
+		else lastInstruction = number;
+		
+		instructionCount++;
+		flatInstructions = null;
+		program.presentCount++;
+		
+		return new Instruction(program, number);
 	}
 	
 	public void eliminateInstruction(Instruction instr) {
-		instructions.remove(instr);
-		program.instructions.remove(instr.getNumber());
+		InstructionArena arena = program.arena;
+		int number = instr.getNumber();
+		
+		if (arena.isPresent(number) == false) return;
+		
+		int previous = arena.previous[number];
+		int next = arena.next[number];
+		
+		if (previous != -1) arena.next[previous] = next;
+		else firstInstruction = next;
+		
+		if (next != -1) arena.previous[next] = previous;
+		else lastInstruction = previous;
+		
+		arena.states[number] = InstructionArena.Eliminated;
+		
+		instructionCount--;
+		flatInstructions = null;
+		program.presentCount--;
 	}
-
+	
+	private int[] getFlatInstructions() {
+		if (flatInstructions == null) {
+			InstructionArena arena = program.arena;
+			int[] flat = new int[instructionCount];
+			
+			int i = 0;
+			for (int number = firstInstruction; number != -1; number = arena.next[number]) {
+				flat[i++] = number;
+			}
+			flatInstructions = flat;
+		}
+		return flatInstructions;
+	}
+	
+	// Iterators follow the links, so they stay valid while instructions are
+	// eliminated or inserted behind the current one.
+	private class InstructionList extends AbstractList<Instruction> {
+		public int size() {
+			return instructionCount;
+		}
+		
+		public Instruction get(int index) {
+			return new Instruction(program, getFlatInstructions()[index]);
+		}
+		
+		public Iterator<Instruction> iterator() {
+			return new Iterator<Instruction>() {
+				private int current = -1;
+				
+				private int following() {
+					InstructionArena arena = program.arena;
+					int number = (current == -1) ? firstInstruction : arena.next[current];
+					
+					while (number != -1 && arena.states[number] == InstructionArena.Eliminated) {
+						number = arena.next[number];
+					}
+					return number;
+				}
+				
+				public boolean hasNext() {
+					return following() != -1;
+				}
+				
+				public Instruction next() {
+					int number = following();
+					
+					if (number == -1) throw new NoSuchElementException();
+					
+					current = number;
+					return new Instruction(program, number);
+				}
+			};
+		}
+	}
+	
 	public boolean isIfTopBlock() {
 		return ifTopBlock;
 	}
@@ -117,7 +236,7 @@ public class BasicBlock {
 	}
 	
 	public BlockAddressValue getAddress() {
-		return new BlockAddressValue(blockNumber);
+		return program.getValues().blockAddress(blockNumber);
 	}
 	
 }
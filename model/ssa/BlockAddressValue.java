@@ -1,12 +1,20 @@
 package model.ssa;
 
 public class BlockAddressValue extends Value {
-	private int blockNumber;
+	private final int blockNumber;
 	
 	BlockAddressValue(int num) {
 		blockNumber = num;
 	}
 	
+	Value rebase(ValuePool pool, int instructionOffset, int blockOffset) {
+		return pool.blockAddress(blockNumber + blockOffset);
+	}
+	
+	public int hashCode() {
+		return blockNumber;
+	}
+	
 	public boolean equals(Value v) {
 		if (v instanceof BlockAddressValue) {
 			BlockAddressValue a = (BlockAddressValue) v;
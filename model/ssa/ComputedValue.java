@@ -1,9 +1,9 @@
 package model.ssa;
 
 public class ComputedValue extends Value {
-	private int instruction;
+	private final int instruction;
 	
-	public ComputedValue(int instr) {
+	ComputedValue(int instr) {
 		instruction = instr;
 	}
 
@@ -11,6 +11,10 @@ public class ComputedValue extends Value {
 		return instruction;
 	}
 	
+	Value rebase(ValuePool pool, int instructionOffset, int blockOffset) {
+		return pool.computed(instruction + instructionOffset);
+	}
+	
 	public int hashCode() {
 		return instruction;
 	}
@@ -1,9 +1,9 @@
 package model.ssa;
 
 public class ConstantValue extends Value {
-	private int value;
+	private final int value;
 	
-	public ConstantValue(int v) {
+	ConstantValue(int v) {
 		value = v;
 	}
 	
@@ -11,6 +11,14 @@ public class ConstantValue extends Value {
 		return value;
 	}
 	
+	Value rebase(ValuePool pool, int instructionOffset, int blockOffset) {
+		return pool.constant(value);
+	}
+	
+	public int hashCode() {
+		return value;
+	}
+	
 	public boolean equals(Value v) {
 		if (v instanceof ConstantValue) {
 			ConstantValue c = (ConstantValue) v;
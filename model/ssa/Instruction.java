@@ -33,51 +33,60 @@ public class Instruction {
 		call
 	}
 	
-	private BasicBlock basicBlock;
-	private int number;
-	private Operator operator;
-	private ArrayList<Value> arguments;
-	private HashSet<Value> liveValues;
+	private static final Operator[] Operators = Operator.values();
 	
-	Instruction(BasicBlock block, int num) {
-		this(block, num, null);
-	}
+	// A view of row number in the instruction arena of the program; views
+	// of the same row are equal.
+	private final Program program;
+	private final int number;
 	
-	Instruction(BasicBlock block, int num, CodeGenerator gen) {
-		basicBlock = block;
+	Instruction(Program pgm, int num) {
+		program = pgm;
 		number = num;
-		if (gen != null)
-			operator = Operator.call;
-		arguments = new ArrayList<>();
-		arguments.add(null); //argX
-		arguments.add(null); //argY
-		arguments.add(null); //argY
-		liveValues = null;
 	}
 	
 	public BasicBlock getBasicBlock() {
-		return basicBlock;
+		return program.getBasicBlock(program.arena.blocks[number]);
 	}
 	
 	public int getNumber() {
 		return number;
 	}
 	
+	// An eliminated instruction keeps its links, so a loop can step on past it.
+	public Instruction getPrevious() {
+		return program.view(program.arena.previous[number]);
+	}
+	
+	public Instruction getNext() {
+		return program.view(program.arena.next[number]);
+	}
+	
+	public boolean isEliminated() {
+		return program.arena.states[number] == InstructionArena.Eliminated;
+	}
+	
 	public Operator getOperator() {
-		return operator;
+		int op = program.arena.operators[number];
+		
+		return (op >= 0) ? Operators[op] : null;
 	}
 	
 	public void setOperator(Operator op) {
-		operator = op;
+		program.arena.operators[number] = (byte)((op != null) ? op.ordinal() : -1);
 	}
 	
 	public boolean isBranch() {
+		Operator operator = getOperator();
+		
 		if (operator.compareTo(Operator.bra) < 0) return false;
 		if (operator.compareTo(Operator.bgt) > 0) return false;
 		return true;
 	}
 	
 	public boolean isEliminateable() {
+		Operator operator = getOperator();
+		
 		if (operator == Operator.adda) return false;
 		if (operator.compareTo(Operator.end) >= 0) return false;
 		if (operator == Operator.store) return false;
@@ -85,51 +94,71 @@ public class Instruction {
 	}
 	
 	public List<Value> getArgs() {
-		return Collections.unmodifiableList(arguments);
+		return Collections.unmodifiableList(Arrays.asList(getArg(0), getArg(1), getArg(2)));
 	}
 	
 	public Value getArg(int i) {
-		return arguments.get(i);
+		int id = program.arena.arguments[3 * number + i];
+		
+		return (id >= 0) ? program.getValues().get(id) : null;
 	}
 	
 	public void setArg(int i, Value v) {
-		arguments.set(i, v);
+		int id = -1;
+		
+		if (v != null) {
+			id = v.getValueID();
+			
+			if (id < 0 || id >= program.getValues().size() || program.getValues().get(id) != v) {
+				throw new IllegalArgumentException("Value " + v + " is not of this program");
+			}
+		}
+		
+		program.arena.arguments[3 * number + i] = id;
+	}
+	
+	private Value replaceArg(int i, Value v) {
+		Value previous = getArg(i);
+		setArg(i, v);
+		
+		return previous;
 	}
 	
 	public Value getArgX() {
-		return arguments.get(0);
+		return getArg(0);
 	}
 	
 	public Value setArgX(Value v) {
-		return arguments.set(0, v);
+		return replaceArg(0, v);
 	}
 	
 	public Value getArgY() {
-		return arguments.get(1);
+		return getArg(1);
 	}
 	
 	public Value setArgY(Value v) {
-		return arguments.set(1, v);
+		return replaceArg(1, v);
 	}
 	
 	public Value getArgZ() {
-		return arguments.get(2);
+		return getArg(2);
 	}
 	
 	public Value setArgZ(Value v) {
-		return arguments.set(2, v);
+		return replaceArg(2, v);
 	}
 	
 	public ComputedValue getResult() {
-		return new ComputedValue(number);
+		return program.getValues().computed(number);
 	}
 	
 	public HashSet<Value> getLiveValues() {
-		return liveValues;
+		return program.arena.liveValues.get(number);
 	}
 	
 	public void setLiveValues(HashSet<Value> vals) {
-		liveValues = vals;
+		if (vals != null) program.arena.liveValues.put(number, vals);
+		else program.arena.liveValues.remove(number);
 	}
 	
 	public ConstantValue getConstantValue() {
@@ -137,18 +166,20 @@ public class Instruction {
 		boolean cArgY = getArgY() instanceof ConstantValue;
 		ConstantValue cX = (cArgX) ? (ConstantValue) getArgX() : null;
 		ConstantValue cY = (cArgY) ? (ConstantValue) getArgY() : null;
+		ValuePool values = program.getValues();
+		Operator operator = getOperator();
 		if (operator == Operator.neg && cArgX) {
-			return new ConstantValue(-cX.getValue());
+			return values.constant(-cX.getValue());
 		}else if (operator == Operator.add && cArgX && cArgY) {
-			return new ConstantValue(cX.getValue() + cY.getValue());
+			return values.constant(cX.getValue() + cY.getValue());
 		}else if (operator == Operator.sub && cArgX && cArgY) {
-			return new ConstantValue(cX.getValue() - cY.getValue());
+			return values.constant(cX.getValue() - cY.getValue());
 		}else if (operator == Operator.mul && cArgX && cArgY) {
-			return new ConstantValue(cX.getValue() * cY.getValue());
+			return values.constant(cX.getValue() * cY.getValue());
 		}else if (operator == Operator.div && cArgX && cArgY) {
-			return new ConstantValue(cX.getValue() / cY.getValue());
+			return values.constant(cX.getValue() / cY.getValue());
 		}else if (operator == Operator.cmp && cArgX && cArgY) {
-			return new ConstantValue(cX.getValue() - cY.getValue());
+			return values.constant(cX.getValue() - cY.getValue());
 		}else{
 			return null;
 		}
@@ -157,19 +188,33 @@ public class Instruction {
 	public void replaceLiveValues(HashMap<Value, Value> replacements) {
 		HashSet<Value> newLiveValues = new HashSet<>();
 		
-		for (Value oldValue : liveValues) {
+		for (Value oldValue : getLiveValues()) {
 			Value newValue = replacements.getOrDefault(oldValue, oldValue);
 			
 			newLiveValues.add(newValue);
 		}
 		
-		liveValues = newLiveValues;
+		setLiveValues(newLiveValues);
+	}
+	
+	public int hashCode() {
+		return number;
+	}
+	
+	public boolean equals(Object obj) {
+		if (obj instanceof Instruction) {
+			Instruction instr = (Instruction) obj;
+			
+			return program == instr.program && number == instr.number;
+		}
+		return false;
 	}
 	
 	public String toString() {
-		Value argX = arguments.get(0);
-		Value argY = arguments.get(1);
-		Value argZ = arguments.get(2);
+		Operator operator = getOperator();
+		Value argX = getArgX();
+		Value argY = getArgY();
+		Value argZ = getArgZ();
 		String argXS = (argX != null) ? argX.toString() : "";
 		String argYS = (argY != null) ? argY.toString() : "";
 		String argZS = (argZ != null) ? argZ.toString() : "";
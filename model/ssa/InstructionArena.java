@@ -0,0 +1,62 @@
+package model.ssa;
+
+import java.util.*;
+
+// The instructions of a program, stored column-wise by instruction number:
+// operator ordinal (-1 while unset), the value IDs of the three arguments
+// (-1 for none), the block number, the links of the block's instruction
+// list (-1 at either end) and whether the row is in use or eliminated.
+// Instruction objects are only views of a row. Live values are kept for
+// the few instructions that have them.
+class InstructionArena {
+	static final byte Unused = 0;
+	static final byte Present = 1;
+	static final byte Eliminated = 2;
+	
+	byte[] operators;
+	int[] arguments;
+	int[] blocks;
+	int[] previous;
+	int[] next;
+	byte[] states;
+	
+	HashMap<Integer, HashSet<Value>> liveValues;
+	
+	InstructionArena() {
+		operators = new byte[64];
+		arguments = new int[3 * 64];
+		blocks = new int[64];
+		previous = new int[64];
+		next = new int[64];
+		states = new byte[64];
+		
+		liveValues = new HashMap<>();
+	}
+	
+	void add(int number, int block) {
+		if (number >= states.length) {
+			int n = Math.max(states.length * 2, number + 1);
+			
+			operators = Arrays.copyOf(operators, n);
+			arguments = Arrays.copyOf(arguments, 3 * n);
+			blocks = Arrays.copyOf(blocks, n);
+			previous = Arrays.copyOf(previous, n);
+			next = Arrays.copyOf(next, n);
+			states = Arrays.copyOf(states, n);
+		}
+		
+		operators[number] = -1;
+		arguments[3 * number] = -1;
+		arguments[3 * number + 1] = -1;
+		arguments[3 * number + 2] = -1;
+		blocks[number] = block;
+		previous[number] = -1;
+		next[number] = -1;
+		states[number] = Present;
+	}
+	
+	boolean isPresent(int number) {
+		return number >= 0 && number < states.length && states[number] == Present;
+	}
+	
+}
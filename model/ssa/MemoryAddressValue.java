@@ -1,10 +1,10 @@
 package model.ssa;
 
 public class MemoryAddressValue extends Value {
-	private String name;
-	private int id;
+	private final String name;
+	private final int id;
 	
-	public MemoryAddressValue(String n, int i) {
+	MemoryAddressValue(String n, int i) {
 		name = n;
 		id = i;
 	}
@@ -13,6 +13,14 @@ public class MemoryAddressValue extends Value {
 		return id;
 	}
 	
+	Value rebase(ValuePool pool, int instructionOffset, int blockOffset) {
+		return pool.memoryAddress(name, id);
+	}
+	
+	public int hashCode() {
+		return id;
+	}
+	
 	public boolean equals(Value v) {
 		if (v instanceof MemoryAddressValue) {
 			MemoryAddressValue a = (MemoryAddressValue) v;
@@ -4,44 +4,85 @@ import java.util.*;
 
 import vcg.*;
 
+// The control flow and dominator edges are collected as pairs while the
+// program is generated, and freeze() packs them into compressed sparse
+// rows: the children of block b are childIndices[childStarts[b]] up to
+// childStarts[b + 1], in the order their edges were added, and likewise
+// for parents and dominees. Blocks and edges can only be added before,
+// and the graph can only be queried after.
 public class Program {
+	// The next instruction number, and the instructions not eliminated.
 	int instructionCount;
-	HashMap<Integer, Instruction> instructions;
+	int presentCount;
+	InstructionArena arena;
 	
 	private ArrayList<BasicBlock> basicBlocks;
 	
-	private HashMap<Integer, ArrayList<Integer>> children;
-	private HashMap<Integer, ArrayList<Integer>> parents;
+	private int[] edgePairs;
+	private int edgeCount;
+	private int[] dominatorPairs;
+	private int dominatorCount;
 	
-	private HashMap<Integer, Integer> dominators;
-	private HashMap<Integer, ArrayList<Integer>> dominees;
+	private boolean frozen;
+	private int[] childStarts;
+	private int[] childIndices;
+	private int[] parentStarts;
+	private int[] parentIndices;
+	private int[] domineeStarts;
+	private int[] domineeIndices;
+	private int[] dominators;
 	
 	private HashMap<Integer, Integer> functionStartBlocks;
 	
+	private ValuePool values;
+	
 	public Program() {
 		instructionCount = 0;
-		instructions = new HashMap<>();
+		presentCount = 0;
+		arena = new InstructionArena();
 		
 		basicBlocks = new ArrayList<>();
 		
-		children = new HashMap<>();
-		parents = new HashMap<>();
+		edgePairs = new int[16];
+		edgeCount = 0;
+		dominatorPairs = new int[16];
+		dominatorCount = 0;
 		
-		dominators = new HashMap<>();
-		dominees = new HashMap<>();
+		frozen = false;
 	
 		functionStartBlocks = new HashMap<>();
+		
+		values = new ValuePool();
 	}
 
+	public ValuePool getValues() {
+		return values;
+	}
+	
 	public List<BasicBlock> getBasicBlocks() {
 		return Collections.unmodifiableList(basicBlocks);
 	}
 	
+	public int getInstructionCount() {
+		return presentCount;
+	}
+	
 	public Instruction getInstruction(int instrNum) {
-		return instructions.getOrDefault(instrNum, null);
+		return arena.isPresent(instrNum) ? new Instruction(this, instrNum) : null;
+	}
+	
+	BasicBlock getBasicBlock(int blockNumber) {
+		return basicBlocks.get(blockNumber);
+	}
+	
+	// Eliminated instructions too, as list links may lead to them.
+	Instruction view(int instrNum) {
+		return (instrNum != -1) ? new Instruction(this, instrNum) : null;
 	}
 	
 	public BasicBlock addBasicBlock(int depth) {
+		checkBuilding();
+		
 		BasicBlock block = new BasicBlock(this, basicBlocks.size(), depth);
 		
 		basicBlocks.add(block);
@@ -49,75 +90,141 @@ public class Program {
 		return block;
 	}
 	
-	public boolean isBranchBlock(BasicBlock block) {
-		int blockNum = block.getBlockNumber();
+	public boolean isFrozen() {
+		return frozen;
+	}
+	
+	public void freeze() {
+		if (frozen) return;
+		
+		int n = basicBlocks.size();
+		
+		childStarts = new int[n + 1];
+		childIndices = new int[edgeCount];
+		buildRows(edgePairs, edgeCount, 0, n, childStarts, childIndices);
+		
+		parentStarts = new int[n + 1];
+		parentIndices = new int[edgeCount];
+		buildRows(edgePairs, edgeCount, 1, n, parentStarts, parentIndices);
+		
+		domineeStarts = new int[n + 1];
+		domineeIndices = new int[dominatorCount];
+		buildRows(dominatorPairs, dominatorCount, 0, n, domineeStarts, domineeIndices);
 		
-		if (children.containsKey(blockNum) == false) {
-			return false;
+		dominators = new int[n];
+		Arrays.fill(dominators, -1);
+		for (int i = 0; i < dominatorCount; i++) {
+			dominators[dominatorPairs[2 * i + 1]] = dominatorPairs[2 * i];
 		}
 		
-		return children.get(blockNum).size() == 2;
+		edgePairs = null;
+		dominatorPairs = null;
+		frozen = true;
 	}
 	
-	public boolean isMergeBlock(BasicBlock block) {
-		int blockNum = block.getBlockNumber();
-		
-		if (parents.containsKey(blockNum) == false) {
-			return false;
+	// Rows are keyed by the from side (0 or 1) of each pair; a counting
+	// sort keeps every row in the order the pairs were added.
+	private static void buildRows(int[] pairs, int count, int from, int n, int[] starts, int[] indices) {
+		for (int i = 0; i < count; i++) {
+			starts[pairs[2 * i + from] + 1]++;
+		}
+		for (int b = 0; b < n; b++) {
+			starts[b + 1] += starts[b];
 		}
 		
-		return parents.get(blockNum).size() == 2;
+		int[] next = Arrays.copyOf(starts, n);
+		for (int i = 0; i < count; i++) {
+			indices[next[pairs[2 * i + from]]++] = pairs[2 * i + 1 - from];
+		}
+	}
+	
+	private void checkBuilding() {
+		if (frozen) {
+			throw new IllegalStateException("Control flow graph is frozen");
+		}
+	}
+	
+	private void checkFrozen() {
+		if (frozen == false) {
+			throw new IllegalStateException("Control flow graph is not frozen");
+		}
+	}
+	
+	public boolean isBranchBlock(BasicBlock block) {
+		return getChildCount(block) == 2;
+	}
+	
+	public boolean isMergeBlock(BasicBlock block) {
+		return getParentCount(block) == 2;
 	}
 	
 	public BasicBlock getLeftParent(BasicBlock block) {
-		int blockNum = block.getBlockNumber();
-		int parentNum = parents.get(blockNum).get(0);
-		
-		return basicBlocks.get(parentNum);
+		return getParent(block, 0);
 	}
 	
 	public BasicBlock getRightParent(BasicBlock block) {
-		int blockNum = block.getBlockNumber();
-		int parentNum = parents.get(blockNum).get(1);
-		
-		return basicBlocks.get(parentNum);
+		return getParent(block, 1);
 	}
 	
-	public List<BasicBlock> getParents(BasicBlock child) {
+	public int getParentCount(BasicBlock child) {
+		checkFrozen();
 		int childNum = child.getBlockNumber();
-		ArrayList<BasicBlock> results = new ArrayList<>(2);
-		
-		if (!parents.containsKey(childNum)) {
-			return results;
-		}
 		
-		for (int parentNum : parents.get(childNum)) {
-			BasicBlock parent = basicBlocks.get(parentNum);
-			
-			results.add(parent);
-		}
+		return parentStarts[childNum + 1] - parentStarts[childNum];
+	}
+	
+	public BasicBlock getParent(BasicBlock child, int i) {
+		checkFrozen();
 		
-		return Collections.unmodifiableList(results);
+		return basicBlocks.get(parentIndices[parentStarts[child.getBlockNumber()] + i]);
 	}
 	
-	public List<BasicBlock> getChildren(BasicBlock parent) {
+	public int getChildCount(BasicBlock parent) {
+		checkFrozen();
 		int parentNum = parent.getBlockNumber();
-		ArrayList<BasicBlock> results = new ArrayList<>(2);
 		
-		if (!children.containsKey(parentNum)) {
-			return results;
-		}
+		return childStarts[parentNum + 1] - childStarts[parentNum];
+	}
+	
+	public BasicBlock getChild(BasicBlock parent, int i) {
+		checkFrozen();
 		
-		for (int childNum : children.get(parentNum)) {
-			BasicBlock child = basicBlocks.get(childNum);
-			
-			results.add(child);
-		}
+		return basicBlocks.get(childIndices[childStarts[parent.getBlockNumber()] + i]);
+	}
+	
+	// The list methods return views; the count and index methods above do
+	// not allocate.
+	public List<BasicBlock> getParents(BasicBlock child) {
+		checkFrozen();
+		
+		return rowView(parentStarts, parentIndices, child.getBlockNumber());
+	}
+	
+	public List<BasicBlock> getChildren(BasicBlock parent) {
+		checkFrozen();
 		
-		return Collections.unmodifiableList(results);
+		return rowView(childStarts, childIndices, parent.getBlockNumber());
+	}
+	
+	private List<BasicBlock> rowView(int[] starts, int[] indices, int row) {
+		int start = starts[row];
+		int size = starts[row + 1] - start;
+		
+		return new AbstractList<BasicBlock>() {
+			public BasicBlock get(int i) {
+				Objects.checkIndex(i, size);
+				return basicBlocks.get(indices[start + i]);
+			}
+			
+			public int size() {
+				return size;
+			}
+		};
 	}
 	
 	public void addEdge(BasicBlock parent, BasicBlock child) {
+		checkBuilding();
+		
 		int parentNum = parent.getBlockNumber();
 		int childNum = child.getBlockNumber();
 		
@@ -125,53 +232,50 @@ public class Program {
 			throw new IllegalArgumentException();
 		}
 		
-		children.putIfAbsent(parentNum, new ArrayList<>());
-		children.get(parentNum).add(childNum);
-		
-		parents.putIfAbsent(childNum, new ArrayList<>());
-		parents.get(childNum).add(parentNum);
+		edgePairs = addPair(edgePairs, edgeCount++, parentNum, childNum);
 	}
 	
-	public boolean isDominator(BasicBlock dominator, BasicBlock dominee) {
-		int dominatorNum = dominator.getBlockNumber();
-		int domineeNum = dominee.getBlockNumber();
-		
-		while (domineeNum != -1) {
-			if (dominatorNum == domineeNum) return true;
-			
-			domineeNum = dominators.getOrDefault(domineeNum, -1);
+	private static int[] addPair(int[] pairs, int index, int a, int b) {
+		if (2 * index + 1 >= pairs.length) {
+			pairs = Arrays.copyOf(pairs, pairs.length * 2);
 		}
+		pairs[2 * index] = a;
+		pairs[2 * index + 1] = b;
 		
-		return false;
+		return pairs;
 	}
 	
 	public BasicBlock getDirectDominator(BasicBlock block) {
-		int domineeNum = block.getBlockNumber();
-		int dominatorNum = dominators.getOrDefault(domineeNum, -1);
+		checkFrozen();
+		int dominatorNum = dominators[block.getBlockNumber()];
 		
 		if (dominatorNum == -1) return null;
 		
 		return basicBlocks.get(dominatorNum);
 	}
 	
-	public List<BasicBlock> getDominees(BasicBlock dominator) {
+	public int getDomineeCount(BasicBlock dominator) {
+		checkFrozen();
 		int dominatorNum = dominator.getBlockNumber();
-		ArrayList<BasicBlock> results = new ArrayList<>();
 		
-		if (dominees.containsKey(dominatorNum) == false) {
-			return results;
-		}
+		return domineeStarts[dominatorNum + 1] - domineeStarts[dominatorNum];
+	}
+	
+	public BasicBlock getDominee(BasicBlock dominator, int i) {
+		checkFrozen();
 		
-		for (int domineeNum : dominees.get(dominatorNum)) {
-			BasicBlock dominee = basicBlocks.get(domineeNum);
-			
-			results.add(dominee);
-		}
+		return basicBlocks.get(domineeIndices[domineeStarts[dominator.getBlockNumber()] + i]);
+	}
+	
+	public List<BasicBlock> getDominees(BasicBlock dominator) {
+		checkFrozen();
 		
-		return results;
+		return rowView(domineeStarts, domineeIndices, dominator.getBlockNumber());
 	}
 	
 	public void addDominatior(BasicBlock dominator, BasicBlock dominee) {
+		checkBuilding();
+		
 		int dominatorNum = dominator.getBlockNumber();
 		int domineeNum = dominee.getBlockNumber();
 		
@@ -179,9 +283,7 @@ public class Program {
 			throw new IllegalArgumentException();
 		}
 		
-		dominators.put(domineeNum, dominatorNum);
-		dominees.putIfAbsent(dominatorNum, new ArrayList<>());
-		dominees.get(dominatorNum).add(domineeNum);
+		dominatorPairs = addPair(dominatorPairs, dominatorCount++, dominatorNum, domineeNum);
 	}
 	
 	public BasicBlock getFunctionStartBlock(int id) {
@@ -198,7 +300,49 @@ public class Program {
 		functionStartBlocks.put(id, startBlockNum);
 	}
 	
+	// Appends a separately generated fragment, renumbering its blocks and
+	// instructions to follow the ones already here, as if it had been
+	// generated into this program. Returns the offset added to the
+	// fragment's instruction numbers.
+	public int append(Program fragment) {
+		checkBuilding();
+		fragment.checkBuilding();
+		
+		int blockOffset = basicBlocks.size();
+		int instructionOffset = instructionCount;
+		
+		for (BasicBlock block : fragment.basicBlocks) {
+			BasicBlock copy = addBasicBlock(block.getDepth());
+			copy.setIfTopBlock(block.isIfTopBlock());
+			copy.setIfFollowBlock(block.isIfFollowBlock());
+			copy.setWhileTopBlock(block.isWhileTopBlock());
+			copy.setWhileFollowBlock(block.isWhileFollowBlock());
+			
+			for (Instruction instr : block.getInstructions()) {
+				copy.appendRebased(instr, instructionOffset, blockOffset);
+			}
+		}
+		
+		for (int i = 0; i < fragment.edgeCount; i++) {
+			edgePairs = addPair(edgePairs, edgeCount++, 
+								fragment.edgePairs[2 * i] + blockOffset, fragment.edgePairs[2 * i + 1] + blockOffset);
+		}
+		for (int i = 0; i < fragment.dominatorCount; i++) {
+			dominatorPairs = addPair(dominatorPairs, dominatorCount++, 
+									 fragment.dominatorPairs[2 * i] + blockOffset, fragment.dominatorPairs[2 * i + 1] + blockOffset);
+		}
+		for (Map.Entry<Integer, Integer> entry : fragment.functionStartBlocks.entrySet()) {
+			functionStartBlocks.put(entry.getKey(), entry.getValue() + blockOffset);
+		}
+		
+		instructionCount += fragment.instructionCount;
+		
+		return instructionOffset;
+	}
+	
 	public ArrayList<VCGNode> getInstructionVCGNodes() {
+		checkFrozen();
+		
 		ArrayList<VCGNode> nodes = new ArrayList<>(basicBlocks.size());
 		
 		for (int i = 0; i < basicBlocks.size(); i++) {
@@ -215,12 +359,10 @@ public class Program {
 		}
 		
 		for (int i = 0; i < basicBlocks.size(); i++) {
-			if (!children.containsKey(i)) continue;
-			
 			VCGNode node = nodes.get(i);
 			
-			for (int childIndex : children.get(i)) {
-				node.getChildren().add(nodes.get(childIndex));
+			for (int e = childStarts[i]; e < childStarts[i + 1]; e++) {
+				node.getChildren().add(nodes.get(childIndices[e]));
 			}
 		}
 		
@@ -228,6 +370,8 @@ public class Program {
 	}
 	
 	public ArrayList<VCGNode> getControlFlowVCGNodes() {
+		checkFrozen();
+		
 		ArrayList<VCGNode> nodes = new ArrayList<>(basicBlocks.size());
 
 		for (int i = 0; i < basicBlocks.size(); i++) {
@@ -240,12 +384,10 @@ public class Program {
 		}
 		
 		for (int i = 0; i < basicBlocks.size(); i++) {
-			if (!children.containsKey(i)) continue;
-			
 			VCGNode node = nodes.get(i);
 			
-			for (int childIndex : children.get(i)) {
-				node.getChildren().add(nodes.get(childIndex));
+			for (int e = childStarts[i]; e < childStarts[i + 1]; e++) {
+				node.getChildren().add(nodes.get(childIndices[e]));
 			}
 		}
 		
@@ -253,6 +395,8 @@ public class Program {
 	}
 	
 	public ArrayList<VCGNode> getDominationVCGNodes() {
+		checkFrozen();
+		
 		ArrayList<VCGNode> nodes = new ArrayList<>(basicBlocks.size());
 
 		for (int i = 0; i < basicBlocks.size(); i++) {
@@ -265,8 +409,8 @@ public class Program {
 		}
 		
 		for (int i = 0; i < basicBlocks.size(); i++) {
-			if (!dominators.containsKey(i)) continue;
-			int j = dominators.get(i);
+			if (dominators[i] == -1) continue;
+			int j = dominators[i];
 			
 			VCGNode child = nodes.get(i);
 			VCGNode parent = nodes.get(j);
@@ -1,11 +1,15 @@
 package model.ssa;
 
 public class RegisterValue extends Value {
-	private int index;
+	private final int index;
 	
-	public RegisterValue(int i) {
+	RegisterValue(int i) {
 		index = i;
 	}
+	
+	Value rebase(ValuePool pool, int instructionOffset, int blockOffset) {
+		return pool.register(index);
+	}
 
 	public int hashCode() {
 		return index;
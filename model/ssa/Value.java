@@ -1,13 +1,21 @@
 package model.ssa;
 
+// Values are immutable, except ArgumentsValue, and all are created by the
+// ValuePool of their program, which numbers them and interns the others.
 public abstract class Value {
+	int valueID = -1;
+	
+	public int getValueID() {
+		return valueID;
+	}
 	
 	public abstract boolean equals(Value v);
+	public abstract int hashCode();
 	public abstract String toString();
 	
-	public int hashCode() {
-		return 0;
-	}
+	// The same value in the pool of a program this one's fragment is
+	// appended to, behind its instructions and blocks.
+	abstract Value rebase(ValuePool pool, int instructionOffset, int blockOffset);
 	
 	public boolean equals(Object obj) {
 		if (obj instanceof Value) {
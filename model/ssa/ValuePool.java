@@ -0,0 +1,139 @@
+package model.ssa;
+
+import java.util.*;
+
+// Every constant, computed, variable, memory address, register and block
+// address value of a program is created here, once: equal values are the
+// same object, and each gets the next dense ID, so tables over the values
+// of a program can be arrays indexed by getValueID(). Argument lists are
+// mutable, so each one is new, but they are numbered all the same.
+public class ValuePool {
+	private ArrayList<Value> values;
+	
+	private HashMap<Integer, ConstantValue> constants;
+	private ArrayList<ComputedValue> computed;
+	private HashMap<Long, VariableValue> variables;
+	private HashMap<Integer, MemoryAddressValue> memoryAddresses;
+	private ArrayList<RegisterValue> registers;
+	private ArrayList<BlockAddressValue> blockAddresses;
+	private WhitespaceValue whitespace;
+	
+	ValuePool() {
+		values = new ArrayList<>();
+		
+		constants = new HashMap<>();
+		computed = new ArrayList<>();
+		variables = new HashMap<>();
+		memoryAddresses = new HashMap<>();
+		registers = new ArrayList<>();
+		blockAddresses = new ArrayList<>();
+		whitespace = null;
+	}
+	
+	public int size() {
+		return values.size();
+	}
+	
+	public Value get(int valueID) {
+		return values.get(valueID);
+	}
+	
+	private <T extends Value> T add(T value) {
+		value.valueID = values.size();
+		values.add(value);
+		
+		return value;
+	}
+	
+	private static <T extends Value> T lookup(ArrayList<T> table, int index) {
+		return (index < table.size()) ? table.get(index) : null;
+	}
+	
+	private static <T extends Value> void store(ArrayList<T> table, int index, T value) {
+		while (table.size() <= index) {
+			table.add(null);
+		}
+		table.set(index, value);
+	}
+	
+	public ConstantValue constant(int v) {
+		ConstantValue value = constants.get(v);
+		
+		if (value == null) {
+			value = add(new ConstantValue(v));
+			constants.put(v, value);
+		}
+		
+		return value;
+	}
+	
+	public ComputedValue computed(int instr) {
+		ComputedValue value = lookup(computed, instr);
+		
+		if (value == null) {
+			value = add(new ComputedValue(instr));
+			store(computed, instr, value);
+		}
+		
+		return value;
+	}
+	
+	// Keyed by ID and version; the name only labels the value.
+	public VariableValue variable(String name, int id, int version) {
+		long key = ((long)id << 32) | (version & 0xFFFFFFFFL);
+		VariableValue value = variables.get(key);
+		
+		if (value == null) {
+			value = add(new VariableValue(name, id, version));
+			variables.put(key, value);
+		}
+		
+		return value;
+	}
+	
+	public MemoryAddressValue memoryAddress(String name, int id) {
+		MemoryAddressValue value = memoryAddresses.get(id);
+		
+		if (value == null) {
+			value = add(new MemoryAddressValue(name, id));
+			memoryAddresses.put(id, value);
+		}
+		
+		return value;
+	}
+	
+	public RegisterValue register(int index) {
+		RegisterValue value = lookup(registers, index);
+		
+		if (value == null) {
+			value = add(new RegisterValue(index));
+			store(registers, index, value);
+		}
+		
+		return value;
+	}
+	
+	public BlockAddressValue blockAddress(int blockNumber) {
+		BlockAddressValue value = lookup(blockAddresses, blockNumber);
+		
+		if (value == null) {
+			value = add(new BlockAddressValue(blockNumber));
+			store(blockAddresses, blockNumber, value);
+		}
+		
+		return value;
+	}
+	
+	public ArgumentsValue arguments(List<Value> args) {
+		return add(new ArgumentsValue(args));
+	}
+	
+	public WhitespaceValue whitespace() {
+		if (whitespace == null) {
+			whitespace = add(new WhitespaceValue());
+		}
+		
+		return whitespace;
+	}
+	
+}
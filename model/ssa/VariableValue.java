@@ -1,20 +1,20 @@
 package model.ssa;
 
 public class VariableValue extends Value {
-	private String name;
-	private int id;
-	private int version;
+	private final String name;
+	private final int id;
+	private final int version;
 	
-	public VariableValue(String n, int i) {
-		this(n, i, -1);
-	}
-	
-	public VariableValue(String n, int i, int v) {
+	VariableValue(String n, int i, int v) {
 		name = n;
 		id = i;
 		version = v;
 	}
 	
+	public String getName() {
+		return name;
+	}
+	
 	public int getID() {
 		return id;
 	}
@@ -22,11 +22,11 @@ public class VariableValue extends Value {
 	public int getVersion() {
 		return version;
 	}
-	
-	public void setVersion(int v) {
-		version = v;
-	}
 
+	Value rebase(ValuePool pool, int instructionOffset, int blockOffset) {
+		return pool.variable(name, id, (version < 0) ? version : version + instructionOffset);
+	}
+	
 	public int hashCode() {
 		return (id << 16) | version;
 	}
@@ -1,11 +1,17 @@
 package model.ssa;
 
 public class WhitespaceValue extends Value {
-	public WhitespaceValue() {
+	WhitespaceValue() {
+	}
+	Value rebase(ValuePool pool, int instructionOffset, int blockOffset) {
+		return pool.whitespace();
 	}
 	public boolean equals(Value v) {
 		return v == this;
 	}
+	public int hashCode() {
+		return System.identityHashCode(this);
+	}
 	public String toString() {
 		return "";
 	}
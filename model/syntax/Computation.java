@@ -7,12 +7,18 @@ import vcg.*;
 public class Computation implements VCGRepresentable {
 	public ArrayList<VariableDeclaration> variables;
 	public ArrayList<FunctionDeclaration> functions;
-	public ArrayList<Statement> statements;
+	public SyntaxArena arena;
+	public int body;
 	
 	public Computation() {
 		variables = new ArrayList<>();
 		functions = new ArrayList<>();
-		statements = new ArrayList<>();
+		arena = null;
+		body = -1;
+	}
+	
+	public ArrayList<Statement> getStatements() {
+		return arena.toStatements(body);
 	}
 	
 	public VCGNode getVCGNode() {
@@ -30,7 +36,7 @@ public class Computation implements VCGRepresentable {
 		
 		VCGNode statementsNode = new VCGNode();
 		statementsNode.setName("Statements");
-		for (Statement s : statements) {
+		for (Statement s : getStatements()) {
 			statementsNode.getChildren().add(s.getVCGNode());
 		}
 		
@@ -9,14 +9,16 @@ public class FunctionDeclaration implements VCGRepresentable {
 	public int nameID;
 	public ArrayList<Integer> parameterIDs;
 	public ArrayList<VariableDeclaration> variables;
-	public ArrayList<Statement> statements;
+	public SyntaxArena arena;
+	public int body;
 	
 	public FunctionDeclaration() {
 		isProcedure = true;
 		nameID = -1;
 		parameterIDs = new ArrayList<>();
 		variables = new ArrayList<>();
-		statements = new ArrayList<>();
+		arena = null;
+		body = -1;
 	}
 	
 	public int getParameterSpace() {
@@ -39,6 +41,10 @@ public class FunctionDeclaration implements VCGRepresentable {
 		return n * 4;
 	}
 	
+	public ArrayList<Statement> getStatements() {
+		return arena.toStatements(body);
+	}
+	
 	public VCGNode getVCGNode() {
 		VCGNode parametersNode = new VCGNode();
 		parametersNode.setName("Parameters");
@@ -57,7 +63,7 @@ public class FunctionDeclaration implements VCGRepresentable {
 		
 		VCGNode statementsNode = new VCGNode();
 		statementsNode.setName("Statements");
-		for (Statement s : statements) {
+		for (Statement s : getStatements()) {
 			statementsNode.getChildren().add(s.getVCGNode());
 		}
 		
@@ -0,0 +1,251 @@
+package model.syntax;
+
+import java.util.*;
+
+// Statements and expressions packed into parallel int arrays. A node is an
+// index; its children are linked through first and next. The op of a term
+// or factor is the Expression.Operator or Term.Operator in front of it (0
+// for the first one), and the op of a relation its Relation.Operator. The
+// value is the ID of a designator or call and the value of a constant.
+//
+//   BlockNode       statements
+//   AssignmentNode  designator, expression
+//   CallNode        argument expressions
+//   IfNode          relation, then block, else block
+//   WhileNode       relation, block
+//   ReturnNode      expression, if any
+//   RelationNode    lhs, rhs
+//   ExpressionNode  terms
+//   TermNode        factors: designators, constants, expressions and calls
+//   DesignatorNode  index expressions
+//   ConstantNode
+//
+// The object classes in this package are only built from it on demand, for
+// the syntax tree graph.
+public class SyntaxArena {
+	public static final int BlockNode = 0;
+	public static final int AssignmentNode = 1;
+	public static final int CallNode = 2;
+	public static final int IfNode = 3;
+	public static final int WhileNode = 4;
+	public static final int ReturnNode = 5;
+	public static final int RelationNode = 6;
+	public static final int ExpressionNode = 7;
+	public static final int TermNode = 8;
+	public static final int DesignatorNode = 9;
+	public static final int ConstantNode = 10;
+	
+	private int[] kind;
+	private int[] op;
+	private int[] value;
+	private int[] first;
+	private int[] next;
+	private int[] last;
+	private int count;
+	
+	public SyntaxArena() {
+		kind = new int[256];
+		op = new int[256];
+		value = new int[256];
+		first = new int[256];
+		next = new int[256];
+		last = new int[256];
+		count = 0;
+	}
+	
+	public int add(int k, int o, int v) {
+		if (count == kind.length) {
+			int n = count * 2;
+			kind = Arrays.copyOf(kind, n);
+			op = Arrays.copyOf(op, n);
+			value = Arrays.copyOf(value, n);
+			first = Arrays.copyOf(first, n);
+			next = Arrays.copyOf(next, n);
+			last = Arrays.copyOf(last, n);
+		}
+		
+		kind[count] = k;
+		op[count] = o;
+		value[count] = v;
+		first[count] = -1;
+		next[count] = -1;
+		last[count] = -1;
+		
+		return count++;
+	}
+	
+	public void appendChild(int parent, int child) {
+		if (first[parent] == -1) {
+			first[parent] = child;
+		}else{
+			next[last[parent]] = child;
+		}
+		last[parent] = child;
+	}
+	
+	public int size() {
+		return count;
+	}
+	
+	public int getKind(int node) {
+		return kind[node];
+	}
+	
+	public int getOp(int node) {
+		return op[node];
+	}
+	
+	public void setOp(int node, int o) {
+		op[node] = o;
+	}
+	
+	public int getValue(int node) {
+		return value[node];
+	}
+	
+	// Both return -1 past the last child.
+	public int getFirstChild(int node) {
+		return first[node];
+	}
+	
+	public int getNextSibling(int node) {
+		return next[node];
+	}
+	
+	public int getChildCount(int node) {
+		int n = 0;
+		for (int c = first[node]; c != -1; c = next[c]) {
+			n++;
+		}
+		return n;
+	}
+	
+	// Object tree conversion:
+	
+	public ArrayList<Statement> toStatements(int block) {
+		ArrayList<Statement> statements = new ArrayList<>();
+		
+		for (int c = first[block]; c != -1; c = next[c]) {
+			statements.add(toStatement(c));
+		}
+		
+		return statements;
+	}
+	
+	public Statement toStatement(int node) {
+		switch (kind[node]) {
+		case AssignmentNode: {
+			Assignment assign = new Assignment();
+			assign.designator = toDesignator(first[node]);
+			assign.expression = toExpression(next[first[node]]);
+			
+			return assign;
+		}
+		case CallNode:
+			return toFunctionCall(node);
+		case IfNode: {
+			IfStatement ifs = new IfStatement();
+			int then = next[first[node]];
+			ifs.relation = toRelation(first[node]);
+			ifs.thenStatements = toStatements(then);
+			ifs.elseStatements = toStatements(next[then]);
+			
+			return ifs;
+		}
+		case WhileNode: {
+			WhileStatement whiles = new WhileStatement();
+			whiles.relation = toRelation(first[node]);
+			whiles.statements = toStatements(next[first[node]]);
+			
+			return whiles;
+		}
+		case ReturnNode: {
+			ReturnStatement returns = new ReturnStatement();
+			if (first[node] != -1) {
+				returns.expression = toExpression(first[node]);
+			}
+			
+			return returns;
+		}
+		default:
+			throw new IllegalStateException("Unknown statement node");
+		}
+	}
+	
+	public Relation toRelation(int node) {
+		Relation rel = new Relation();
+		rel.op = Relation.Operator.values()[op[node]];
+		rel.lhs = toExpression(first[node]);
+		rel.rhs = toExpression(next[first[node]]);
+		
+		return rel;
+	}
+	
+	public Expression toExpression(int node) {
+		Expression ex = new Expression();
+		
+		for (int c = first[node]; c != -1; c = next[c]) {
+			if (c != first[node]) {
+				ex.operators.add(Expression.Operator.values()[op[c]]);
+			}
+			ex.terms.add(toTerm(c));
+		}
+		
+		return ex;
+	}
+	
+	public Term toTerm(int node) {
+		Term t = new Term();
+		
+		for (int c = first[node]; c != -1; c = next[c]) {
+			if (c != first[node]) {
+				t.operators.add(Term.Operator.values()[op[c]]);
+			}
+			t.factors.add(toFactor(c));
+		}
+		
+		return t;
+	}
+	
+	public Factor toFactor(int node) {
+		switch (kind[node]) {
+		case DesignatorNode:
+			return toDesignator(node);
+		case ConstantNode: {
+			Constant c = new Constant();
+			c.value = value[node];
+			
+			return c;
+		}
+		case ExpressionNode:
+			return toExpression(node);
+		case CallNode:
+			return toFunctionCall(node);
+		default:
+			throw new IllegalStateException("Unknown factor node");
+		}
+	}
+	
+	public Designator toDesignator(int node) {
+		Designator d = new Designator();
+		d.id = value[node];
+		
+		for (int c = first[node]; c != -1; c = next[c]) {
+			d.indexExpressions.add(toExpression(c));
+		}
+		
+		return d;
+	}
+	
+	public FunctionCall toFunctionCall(int node) {
+		FunctionCall func = new FunctionCall();
+		func.functionID = value[node];
+		
+		for (int c = first[node]; c != -1; c = next[c]) {
+			func.parameterExpressions.add(toExpression(c));
+		}
+		
+		return func;
+	}
+	
+}
@@ -0,0 +1,10 @@
+package processor;
+
+public class CompilationException extends RuntimeException {
+	private static final long serialVersionUID = 1L;
+	
+	public CompilationException(String message) {
+		super(message);
+	}
+	
+}
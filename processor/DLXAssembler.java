@@ -4,6 +4,8 @@ import java.util.*;
 
 import model.dlx.*;
 
+import jfr.*;
+
 public class DLXAssembler {
 	private DLXProgram program;
 	
@@ -12,6 +14,9 @@ public class DLXAssembler {
 	}
 	
 	public void resolveLabels() {
+		AssemblyEvent event = new AssemblyEvent();
+		event.begin();
+		
 		int instrCount = 0;
 		for (DLXBlock block : program.getBlocks()) {
 			for (DLXInstruction instr : block.getInstructions()) {
@@ -47,49 +52,129 @@ public class DLXAssembler {
 				}
 			}
 		}
+		
+		commitEvent(event, "resolveLabels", instrCount);
 	}
 	
-	public ArrayList<Integer> generateCode() {
-		ArrayList<Integer> machineCode = new ArrayList<>();
+	public int[] generateCode() {
+		AssemblyEvent event = new AssemblyEvent();
+		event.begin();
+		
+		int instrCount = program.getInstructionCount();
+		
+		int[] machineCode = new int[instrCount];
+		int index = 0;
 		
 		for (DLXBlock block : program.getBlocks()) {
 			for (DLXInstruction instr : block.getInstructions()) {
-				DLXInstruction.Operator op = instr.op;
-				DLXInstruction.Format fmt = op.getFormat();
-				
-				int code = 0;
-				
-				code |= op.getOpCode() << 26;
-				
-				if (fmt == DLXInstruction.Format.F1) {
-					short a = generateArgument(instr.getArg(0));
-					short b = generateArgument(instr.getArg(1));
-					short c = generateArgument(instr.getArg(2));
-					
-					code |= (a & 0x001F) << 21;
-					code |= (b & 0x001F) << 16;
-					code |= (c & 0xFFFF) <<  0;
-					
-				}else if (fmt == DLXInstruction.Format.F2) {
-					short a = generateArgument(instr.getArg(0));
-					short b = generateArgument(instr.getArg(1));
-					short c = generateArgument(instr.getArg(2));
-					
-					code |= (a & 0x001F) << 21;
-					code |= (b & 0x001F) << 16;
-					code |= (c & 0x001F) <<  0;
-					
-				}else if (fmt == DLXInstruction.Format.F3) {
-					short c = generateArgument(instr.getArg(2));
+				machineCode[index++] = encode(instr);
+			}
+		}
+		
+		commitEvent(event, "generateCode", instrCount);
+		
+		return machineCode;
+	}
+	
+	private int encode(DLXInstruction instr) {
+		DLXInstruction.Operator op = instr.op;
+		DLXInstruction.Format fmt = op.getFormat();
+		
+		int code = 0;
+		
+		code |= op.getOpCode() << 26;
+		
+		if (fmt == DLXInstruction.Format.F1) {
+			short a = generateArgument(instr.getArg(0));
+			short b = generateArgument(instr.getArg(1));
+			short c = generateArgument(instr.getArg(2));
+			
+			code |= (a & 0x001F) << 21;
+			code |= (b & 0x001F) << 16;
+			code |= (c & 0xFFFF) <<  0;
+			
+		}else if (fmt == DLXInstruction.Format.F2) {
+			short a = generateArgument(instr.getArg(0));
+			short b = generateArgument(instr.getArg(1));
+			short c = generateArgument(instr.getArg(2));
+			
+			code |= (a & 0x001F) << 21;
+			code |= (b & 0x001F) << 16;
+			code |= (c & 0x001F) <<  0;
+			
+		}else if (fmt == DLXInstruction.Format.F3) {
+			short c = generateArgument(instr.getArg(2));
+			
+			code |= (c & 0xFFFF) <<  0;
+		}
+		
+		return code;
+	}
+	
+	// Assembles the program as the object unit of one function, or main.
+	// Its blocks have to be numbered from 0. Labels are resolved in the
+	// same pass that encodes the instructions, and every relocated field
+	// is left for the linker.
+	public ObjectUnit assembleUnit(String name) {
+		AssemblyEvent event = new AssemblyEvent();
+		event.begin();
+		
+		int instrCount = 0;
+		int[] blockStarts = new int[program.getBlocks().size()];
+		
+		for (int i = 0; i < blockStarts.length; i++) {
+			blockStarts[i] = instrCount;
+			
+			for (DLXInstruction instr : program.getBlocks().get(i).getInstructions()) {
+				instr.number = instrCount++;
+			}
+		}
+		
+		int[] machineCode = new int[instrCount];
+		ArrayList<Relocation> relocations = new ArrayList<>();
+		
+		for (DLXBlock block : program.getBlocks()) {
+			for (DLXInstruction instr : block.getInstructions()) {
+				for (int i = 0; i < 3; i++) {
+					String arg = instr.getArg(i);
+					if (arg == null || arg.equals("_")) {
+						arg = "0";
+					}else if (arg.charAt(0) == '{') {
+						int num = Integer.parseInt(arg.substring(1, arg.length() - 1));
+						arg = Integer.toString(blockStarts[num] - instr.number);
+					}else if (arg.equals("gp")) {
+						arg = "r30";
+					}else if (arg.equals("sp")) {
+						arg = "r29";
+					}else if (arg.equals("fp")) {
+						arg = "r28";
+					}
 					
-					code |= (c & 0xFFFF) <<  0;
+					instr.setArg(i, arg);
 				}
 				
-				machineCode.add(code);
+				if (instr.relocation != null) {
+					instr.relocation.index = instr.number;
+					relocations.add(instr.relocation);
+				}
+				
+				machineCode[instr.number] = encode(instr);
 			}
 		}
 		
-		return machineCode;
+		commitEvent(event, "assembleUnit", instrCount);
+		
+		return new ObjectUnit(name, machineCode, relocations);
+	}
+	
+	private static void commitEvent(AssemblyEvent event, String step, int instrCount) {
+		event.end();
+		if (event.shouldCommit()) {
+			event.unit = PassEvent.currentUnit();
+			event.step = step;
+			event.instructions = instrCount;
+			event.commit();
+		}
 	}
 	
 	public short generateArgument(String arg) {
@@ -5,6 +5,8 @@ import java.util.*;
 import model.ssa.*;
 import model.dlx.*;
 
+import jfr.*;
+
 public class DLXGenerator {
 	private SymbolTable symbolTable;
 	private Program inProgram;
@@ -21,17 +23,21 @@ public class DLXGenerator {
 	}
 	
 	public DLXProgram generate() {
+		DLXGenerationEvent event = new DLXGenerationEvent();
+		event.begin();
+		
 		for (BasicBlock inBlock : inProgram.getBasicBlocks()) {
 			DLXBlock outBlock = new DLXBlock(inBlock.getBlockNumber());
 			
 			outProgram.getBlocks().add(outBlock);
 			
-			if (inBlock.getDepth() == 0 && inProgram.getParents(inBlock).size() == 0) {
+			if (inBlock.getDepth() == 0 && inProgram.getParentCount(inBlock) == 0) {
 				DLXInstruction instr1 = new DLXInstruction(-1);
 				instr1.op = DLXInstruction.Operator.SUBI;
 				instr1.arg0 = "sp";
 				instr1.arg1 = "gp";
 				instr1.arg2 = "#" + globalSpace;
+				instr1.relocation = new Relocation(Relocation.Kind.GlobalSpace, null, 0);
 				
 				DLXInstruction instr2 = new DLXInstruction(-1);
 				instr2.op = DLXInstruction.Operator.ADD;
@@ -42,7 +48,7 @@ public class DLXGenerator {
 				outBlock.getInstructions().add(instr1);
 				outBlock.getInstructions().add(instr2);
 				
-			}else if (inBlock.getDepth() > 0 && inProgram.getParents(inBlock).size() == 0) {
+			}else if (inBlock.getDepth() > 0 && inProgram.getParentCount(inBlock) == 0) {
 				DLXInstruction instr1 = new DLXInstruction(-1);
 				instr1.op = DLXInstruction.Operator.PSH;
 				instr1.arg0 = "r31";
@@ -133,6 +139,14 @@ public class DLXGenerator {
 			}
 		}
 		
+		event.end();
+		if (event.shouldCommit()) {
+			event.unit = PassEvent.currentUnit();
+			event.ssaInstructions = inProgram.getInstructionCount();
+			event.dlxInstructions = outProgram.getInstructionCount();
+			event.commit();
+		}
+		
 		return outProgram;
 	}
 	
@@ -256,7 +270,7 @@ public class DLXGenerator {
 				offsetValue = inHelpInstr.getArgY();
 			}else{
 				memAddrValue = (MemoryAddressValue) inInstr.getArgY();
-				offsetValue = new ConstantValue(0);
+				offsetValue = inProgram.getValues().constant(0);
 			}
 			int id = memAddrValue.getID();
 			
@@ -268,12 +282,14 @@ public class DLXGenerator {
 				
 				outInstr1.op = DLXInstruction.Operator.LDW;
 				outInstr1.arg2 = "#" + offset;
+				outInstr1.relocation = globalRelocation(id, offset);
 			}else{
 				outInstr0 = new DLXInstruction(inInstr.getNumber());
 				outInstr0.op = DLXInstruction.Operator.ADDI;
 				outInstr0.arg0 = "r27";
 				outInstr0.arg1 = offsetValue.toString();
 				outInstr0.arg2 = "#" + offset;
+				outInstr0.relocation = globalRelocation(id, offset);
 				
 				outInstr1.op = DLXInstruction.Operator.LDX;
 				outInstr1.arg2 = "r27";
@@ -300,7 +316,7 @@ public class DLXGenerator {
 				offsetValue = inHelpInstr.getArgY();
 			}else{
 				memAddrValue = (MemoryAddressValue) inInstr.getArgY();
-				offsetValue = new ConstantValue(0);
+				offsetValue = inProgram.getValues().constant(0);
 			}
 			int id = memAddrValue.getID();
 			
@@ -312,12 +328,14 @@ public class DLXGenerator {
 				
 				outInstr1.op = DLXInstruction.Operator.STW;
 				outInstr1.arg2 = "#" + offset;
+				outInstr1.relocation = globalRelocation(id, offset);
 			}else{
 				outInstr0 = new DLXInstruction(inInstr.getNumber());
 				outInstr0.op = DLXInstruction.Operator.ADDI;
 				outInstr0.arg0 = "r27";
 				outInstr0.arg1 = offsetValue.toString();
 				outInstr0.arg2 = "#" + offset;
+				outInstr0.relocation = globalRelocation(id, offset);
 				
 				outInstr1.op = DLXInstruction.Operator.STX;
 				outInstr1.arg2 = "r27";
@@ -480,7 +498,9 @@ public class DLXGenerator {
 			}
 			
 			// Restore live registers:
-			for (Value liveValue : inInstr.getLiveValues()) {
+			ArrayList<Value> savedValues = new ArrayList<>(inInstr.getLiveValues());
+			Collections.reverse(savedValues);
+			for (Value liveValue : savedValues) {
 				if (liveValue instanceof RegisterValue) {
 					DLXInstruction popInstr = new DLXInstruction(inInstr.getNumber());
 					popInstr.op = DLXInstruction.Operator.POP;
@@ -516,6 +536,16 @@ public class DLXGenerator {
 		return outInstrs;
 	}
 	
+	// Global variables are addressed from gp; other offsets do not depend
+	// on the memory layout of the rest of the program.
+	private Relocation globalRelocation(int id, int offset) {
+		if (symbolTable.hasRelativeOffset(id) || symbolTable.getDepth(id) != 0) {
+			return null;
+		}
+		
+		return new Relocation(Relocation.Kind.Global, symbolTable.IDToName(id), offset - symbolTable.getOffset(id));
+	}
+	
 	private String generateArg(Value inValue) {
 		if (inValue == null) return null;
 		if (inValue instanceof ConstantValue || 
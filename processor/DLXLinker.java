@@ -0,0 +1,86 @@
+package processor;
+
+import java.util.*;
+
+import model.dlx.*;
+
+import jfr.*;
+
+// Places object units one after another, in the order given, and patches
+// all their relocations in a single pass. Main has to come first, since
+// execution starts at the first instruction.
+public class DLXLinker {
+	private Map<String, Integer> globalOffsets;
+	private int globalSpace;
+	
+	public DLXLinker(Map<String, Integer> globals, int gs) {
+		globalOffsets = globals;
+		globalSpace = gs;
+	}
+	
+	public int[] link(List<ObjectUnit> units) {
+		AssemblyEvent event = new AssemblyEvent();
+		event.begin();
+		
+		HashMap<String, Integer> unitStarts = new HashMap<>();
+		int instrCount = 0;
+		
+		for (ObjectUnit unit : units) {
+			if (unitStarts.put(unit.getName(), instrCount) != null) {
+				throw new IllegalStateException("Duplicate symbol: " + unit.getName());
+			}
+			instrCount += unit.getSize();
+		}
+		
+		int[] machineCode = new int[instrCount];
+		int start = 0;
+		
+		for (ObjectUnit unit : units) {
+			System.arraycopy(unit.getCode(), 0, machineCode, start, unit.getSize());
+			
+			for (Relocation relocation : unit.getRelocations()) {
+				int index = start + relocation.index;
+				
+				int value = resolve(relocation, index, unitStarts);
+				
+				machineCode[index] = (machineCode[index] & 0xFFFF0000) | (value & 0xFFFF);
+			}
+			
+			start += unit.getSize();
+		}
+		
+		event.end();
+		if (event.shouldCommit()) {
+			event.unit = PassEvent.currentUnit();
+			event.step = "link";
+			event.instructions = instrCount;
+			event.commit();
+		}
+		
+		return machineCode;
+	}
+	
+	private int resolve(Relocation relocation, int index, Map<String, Integer> unitStarts) {
+		switch (relocation.kind) {
+		case Call: {
+			Integer target = unitStarts.get(relocation.symbol);
+			if (target == null) {
+				throw new IllegalStateException("Undefined function: " + relocation.symbol);
+			}
+			return target - index;
+		}
+		case Global: {
+			Integer offset = globalOffsets.get(relocation.symbol);
+			if (offset == null) {
+				throw new IllegalStateException("Undefined global: " + relocation.symbol);
+			}
+			return offset + relocation.addend;
+		}
+		case GlobalSpace:
+			return globalSpace;
+		default:
+			throw new IllegalStateException("Unknown relocation");
+		}
+	}
+	
+}
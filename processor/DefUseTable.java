@@ -4,30 +4,86 @@ import java.util.*;
 
 import model.ssa.*;
 
+// Definitions and uses of the values of one program. Entries are found by
+// value ID and definitions by instruction number, in flat arrays. Each use
+// is a node linked into two lists, both in the order uses were added: the
+// uses of its value and the uses of its instruction. Adding and removing a
+// use only searches the few uses of the instruction.
+//
+// As before, an instruction lists each value it uses once: removing one
+// use of a value unlists the others, which still count as uses of the value.
+//
+// Replacing all uses of a value rewrites the arguments of the instructions
+// found in its list, so the optimizer never walks the program to do it.
 public class DefUseTable {
 	private static class Entry {
 		Value value;
 		int definition;
-		ArrayList<Integer> uses;
-		public Entry(Value v) {
+		
+		Use firstUse;
+		Use lastUse;
+		int useCount;
+		
+		Entry previous;
+		Entry next;
+		boolean removed;
+		
+		Entry(Value v) {
 			value = v;
-			uses = new ArrayList<>();
 		}
 	}
-	private HashMap<Value, Entry> entries;
-	private ArrayList<Entry> orderedEntries;
-	private HashMap<Integer, Entry> definitionLines;
-	private HashMap<Integer, HashSet<Entry>> useLines;
 	
-	public DefUseTable() {
-		entries = new HashMap<>();
-		orderedEntries = new ArrayList<>();
-		definitionLines = new HashMap<>();
-		useLines = new HashMap<>();
+	private static class Use {
+		Entry entry;
+		int instruction;
+		
+		// In the list of the entry:
+		Use previous;
+		Use next;
+		
+		// In the list of the instruction:
+		Use previousInLine;
+		Use nextInLine;
+		boolean listed;
+		
+		Use(Entry e, int i) {
+			entry = e;
+			instruction = i;
+		}
+	}
+	
+	private Program program;
+	
+	private Entry[] valueEntries;
+	private HashMap<Value, Entry> otherEntries;
+	private Entry firstEntry;
+	private Entry lastEntry;
+	private int entryCount;
+	
+	private Entry[] definitionLines;
+	private Use[] useLines;
+	private Use[] lastUses;
+	
+	public DefUseTable(Program pgm) {
+		program = pgm;
+		
+		valueEntries = new Entry[64];
+		otherEntries = new HashMap<>();
+		firstEntry = null;
+		lastEntry = null;
+		entryCount = 0;
+		
+		definitionLines = new Entry[64];
+		useLines = new Use[64];
+		lastUses = new Use[64];
+	}
+	
+	public int getEntryCount() {
+		return entryCount;
 	}
 	
 	public Value getDefinedValue(int instructionNumber) {
-		Entry entry = definitionLines.get(instructionNumber);
+		Entry entry = definitionLine(instructionNumber);
 		
 		if (entry == null) {
 			return null;
@@ -37,116 +93,264 @@ public class DefUseTable {
 	}
 	
 	public Set<Value> getUsedValues(int instructionNumber) {
-		HashSet<Entry> entries = useLines.get(instructionNumber);
 		HashSet<Value> values = new HashSet<>();
 		
-		if (entries != null) {
-			for (Entry entry : entries) {
-				values.add(entry.value);
-			}
+		for (Use use = useLine(instructionNumber); use != null; use = use.nextInLine) {
+			if (use.listed) values.add(use.entry.value);
 		}
 		
 		return Collections.unmodifiableSet(values);
 	}
 	
 	public Integer getDefinition(Value value) {
-		if (entries.containsKey(value) == false) {
+		Entry entry = lookup(value);
+		
+		if (entry == null) {
 			return -1;
 		}
 		
-		Entry entry = entries.get(value);
-		
 		return entry.definition;
 	}
 	
 	public List<Integer> getUses(Value value) {
-		if (entries.containsKey(value) == false) {
+		Entry entry = lookup(value);
+		
+		if (entry == null) {
 			return null;
 		}
 		
-		Entry entry = entries.get(value);
+		ArrayList<Integer> uses = new ArrayList<>(entry.useCount);
+		for (Use use = entry.firstUse; use != null; use = use.next) {
+			uses.add(use.instruction);
+		}
 		
-		return Collections.unmodifiableList(entry.uses);
+		return Collections.unmodifiableList(uses);
 	}
 	
 	public void addDefinition(Value value, int instructionNumber) {
-		Entry entry = entries.get(value);
-		if (entry == null) {
-			entry = new Entry(value);
-			entries.put(value, entry);
-			orderedEntries.add(entry);
-		}
+		Entry entry = lookupOrAdd(value);
+		
 		entry.definition = instructionNumber;
-		definitionLines.put(instructionNumber, entry);
+		
+		definitionLines = grow(definitionLines, instructionNumber);
+		definitionLines[instructionNumber] = entry;
 	}
 	
 	public void removeDefinition(int instructionNumber) {
-		Entry entry = definitionLines.get(instructionNumber);
+		Entry entry = definitionLine(instructionNumber);
 		
 		if (entry == null) return;
-		if (entry.uses.size() > 0) {
-			entry.definition = -1;			
-		}else {
-			entries.remove(entry.value);
-			orderedEntries.remove(entry);
+		if (entry.useCount > 0) {
+			entry.definition = -1;
+		}else{
+			remove(entry);
 		}
 		
-		definitionLines.remove(instructionNumber);
+		definitionLines[instructionNumber] = null;
 	}
 	
 	public void addUse(Value value, int instructionNumber) {
-		Entry entry = entries.get(value);
-		if (entry == null) {
-			entry = new Entry(value);
-			entries.put(value, entry);
-			orderedEntries.add(entry);
-		}
-		entry.uses.add(instructionNumber);
-		useLines.putIfAbsent(instructionNumber, new HashSet<>());
-		useLines.get(instructionNumber).add(entry);
+		Entry entry = lookupOrAdd(value);
+		Use use = new Use(entry, instructionNumber);
+		
+		use.previous = entry.lastUse;
+		if (entry.lastUse != null) entry.lastUse.next = use;
+		else entry.firstUse = use;
+		entry.lastUse = use;
+		entry.useCount++;
+		
+		useLines = grow(useLines, instructionNumber);
+		lastUses = grow(lastUses, instructionNumber);
+		use.previousInLine = lastUses[instructionNumber];
+		if (use.previousInLine != null) use.previousInLine.nextInLine = use;
+		else useLines[instructionNumber] = use;
+		lastUses[instructionNumber] = use;
+		use.listed = true;
 	}
 	
 	public void removeUse(Value value, int instructionNumber) {
-		Entry entry = entries.get(value);
+		Entry entry = lookup(value);
 		if (entry == null) {
 			return;
 		}
-		entry.uses.remove(new Integer(instructionNumber));
+		
+		Use use = firstUse(entry, instructionNumber);
+		if (use != null) {
+			unlink(use);
+		}
 		if (entry.definition == -1 &&
-			entry.uses.size() == 0) {
-			entries.remove(entry.value);
-			orderedEntries.remove(entry);
+			entry.useCount == 0) {
+			remove(entry);
+		}
+		
+		for (Use u = useLine(instructionNumber); u != null; u = u.nextInLine) {
+			if (u.entry == entry) u.listed = false;
 		}
-		useLines.putIfAbsent(instructionNumber, new HashSet<>());
-		useLines.get(instructionNumber).remove(entry);
 	}
 	
 	public void removeUses(int instructionNumber) {
-		HashSet<Entry> usingEntries = useLines.get(instructionNumber);
-		
-		if (usingEntries == null) return;
+		Use use = useLine(instructionNumber);
 		
-		for (Entry entry : usingEntries) {
-			entry.uses.remove(new Integer(instructionNumber));
+		while (use != null) {
+			if (use.listed == false) {
+				use = use.nextInLine;
+				continue;
+			}
+			
+			// Once for each value the instruction lists.
+			Entry entry = use.entry;
+			for (Use u = use; u != null; u = u.nextInLine) {
+				if (u.entry == entry) u.listed = false;
+			}
 			
+			Use next = use.nextInLine;
+			
+			unlink(firstUse(entry, instructionNumber));
 			if (entry.definition == -1 &&
-				entry.uses.size() == 0) {
-				entries.remove(entry.value);
-				orderedEntries.remove(entry);
+				entry.useCount == 0) {
+				remove(entry);
 			}
+			
+			use = next;
 		}
+	}
+	
+	// Uses by instructions eliminated since stay with from.
+	public void replaceAllUses(Value from, Value to) {
+		Entry entry = lookup(from);
 		
-		useLines.remove(instructionNumber);
+		if (entry == null || from.equals(to)) {
+			return;
+		}
+		
+		Use use = entry.firstUse;
+		while (use != null) {
+			Use next = use.next;
+			Instruction instr = program.getInstruction(use.instruction);
+			
+			if (instr != null) {
+				replaceArgs(instr, from, to);
+				
+				removeUse(from, use.instruction);
+				addUse(to, use.instruction);
+			}
+			
+			use = next;
+		}
+	}
+	
+	private static void replaceArgs(Instruction instr, Value from, Value to) {
+		for (int j = 0; j < 3; j++) {
+			Value arg = instr.getArg(j);
+			
+			if (arg instanceof ArgumentsValue) {
+				((ArgumentsValue) arg).replace(from, to);
+			}else if (from.equals(arg)) {
+				instr.setArg(j, to);
+			}
+		}
 	}
 	
 	public boolean hasUses(Value value) {
-		Entry entry = entries.get(value);
+		Entry entry = lookup(value);
 		
 		if (entry == null) {
 			return false;
 		}else{
-			return entry.uses.size() > 0;
+			return entry.useCount > 0;
+		}
+	}
+	
+	private Entry lookup(Value value) {
+		int id = (value != null) ? value.getValueID() : -1;
+		
+		if (id < 0) {
+			return otherEntries.get(value);
+		}
+		
+		return (id < valueEntries.length) ? valueEntries[id] : null;
+	}
+	
+	private Entry lookupOrAdd(Value value) {
+		Entry entry = lookup(value);
+		
+		if (entry == null) {
+			entry = new Entry(value);
+			
+			int id = (value != null) ? value.getValueID() : -1;
+			if (id < 0) {
+				otherEntries.put(value, entry);
+			}else{
+				valueEntries = grow(valueEntries, id);
+				valueEntries[id] = entry;
+			}
+			
+			entry.previous = lastEntry;
+			if (lastEntry != null) lastEntry.next = entry;
+			else firstEntry = entry;
+			lastEntry = entry;
+			entryCount++;
 		}
+		
+		return entry;
+	}
+	
+	private void remove(Entry entry) {
+		if (entry.removed) return;
+		
+		int id = (entry.value != null) ? entry.value.getValueID() : -1;
+		if (id < 0) {
+			otherEntries.remove(entry.value);
+		}else{
+			valueEntries[id] = null;
+		}
+		
+		if (entry.previous != null) entry.previous.next = entry.next;
+		else firstEntry = entry.next;
+		if (entry.next != null) entry.next.previous = entry.previous;
+		else lastEntry = entry.previous;
+		
+		entry.removed = true;
+		entryCount--;
+	}
+	
+	// The earliest use of the entry by the instruction, as it comes first
+	// in both lists.
+	private Use firstUse(Entry entry, int instructionNumber) {
+		for (Use use = useLine(instructionNumber); use != null; use = use.nextInLine) {
+			if (use.entry == entry) return use;
+		}
+		return null;
+	}
+	
+	private void unlink(Use use) {
+		Entry entry = use.entry;
+		
+		if (use.previous != null) use.previous.next = use.next;
+		else entry.firstUse = use.next;
+		if (use.next != null) use.next.previous = use.previous;
+		else entry.lastUse = use.previous;
+		
+		entry.useCount--;
+		
+		if (use.previousInLine != null) use.previousInLine.nextInLine = use.nextInLine;
+		else useLines[use.instruction] = use.nextInLine;
+		if (use.nextInLine != null) use.nextInLine.previousInLine = use.previousInLine;
+		else lastUses[use.instruction] = use.previousInLine;
+	}
+	
+	private Entry definitionLine(int instructionNumber) {
+		return (instructionNumber < definitionLines.length) ? definitionLines[instructionNumber] : null;
+	}
+	
+	private Use useLine(int instructionNumber) {
+		return (instructionNumber < useLines.length) ? useLines[instructionNumber] : null;
+	}
+	
+	private static <T> T[] grow(T[] array, int index) {
+		if (index < array.length) return array;
+		
+		return Arrays.copyOf(array, Math.max(array.length * 2, index + 1));
 	}
 	
 	public String toString() {
@@ -154,12 +358,12 @@ public class DefUseTable {
 		
 		bob.append("Def Value Uses\n");
 		
-		for (Entry entry : orderedEntries) {
-			bob.append(String.format("%3s %5s", 
-					                 entry.definition, 
+		for (Entry entry = firstEntry; entry != null; entry = entry.next) {
+			bob.append(String.format("%3s %5s",
+					                 entry.definition,
 					                 entry.value.toString()));
-			for (int use : entry.uses) {
-				bob.append(String.format(" %03d", use));
+			for (Use use = entry.firstUse; use != null; use = use.next) {
+				bob.append(String.format(" %03d", use.instruction));
 			}
 			bob.append("\n");
 		}
@@ -0,0 +1,61 @@
+package processor;
+
+import java.util.*;
+
+import model.ssa.*;
+
+public class DominatorTree {
+	private BasicBlock[] directDominators;
+	private int[] entry;
+	private int[] exit;
+	
+	public DominatorTree(Program program) {
+		int blockCount = program.getBasicBlocks().size();
+		
+		directDominators = new BasicBlock[blockCount];
+		entry = new int[blockCount];
+		exit = new int[blockCount];
+		
+		int counter = 0;
+		ArrayDeque<BasicBlock> stack = new ArrayDeque<>();
+		boolean[] visited = new boolean[blockCount];
+		
+		for (BasicBlock root : program.getBasicBlocks()) {
+			if (program.getDirectDominator(root) != null) continue;
+			
+			stack.push(root);
+			
+			while (stack.isEmpty() == false) {
+				BasicBlock block = stack.peek();
+				int num = block.getBlockNumber();
+				
+				if (visited[num] == false) {
+					visited[num] = true;
+					entry[num] = counter++;
+					
+					for (int i = 0; i < program.getDomineeCount(block); i++) {
+						BasicBlock dominee = program.getDominee(block, i);
+						
+						directDominators[dominee.getBlockNumber()] = block;
+						stack.push(dominee);
+					}
+				}else{
+					stack.pop();
+					exit[num] = counter++;
+				}
+			}
+		}
+	}
+	
+	public BasicBlock getDirectDominator(BasicBlock block) {
+		return directDominators[block.getBlockNumber()];
+	}
+	
+	public boolean isDominator(BasicBlock dominator, BasicBlock dominee) {
+		int a = dominator.getBlockNumber();
+		int b = dominee.getBlockNumber();
+		
+		return entry[a] <= entry[b] && exit[b] <= exit[a];
+	}
+	
+}
@@ -0,0 +1,90 @@
+package processor;
+
+import java.util.*;
+
+import model.ssa.*;
+import model.syntax.*;
+
+// Keeps the parsed and lowered form of each function between compilations
+// of the same program, so an edit only redoes the functions it touched.
+// A function is reused if its tokens are unchanged, and so is everything
+// its symbol IDs and name lookups depend on: the global declarations and
+// the name, kind and ID of every function declared before it.
+public class FunctionCache {
+	static class Entry {
+		long tokenHash;
+		long contextHash;
+		int firstID;
+		FunctionDeclaration function;
+		SymbolTable symbols;
+		Program ssa;
+		int[] calls;
+	}
+	
+	// Shared by all compilations, so name indices stay valid across them.
+	private NamePool names;
+	private HashMap<String, Entry> entries;
+	
+	private int functionCount;
+	private int reusedCount;
+	
+	public FunctionCache() {
+		names = new NamePool();
+		entries = new HashMap<>();
+	}
+	
+	public NamePool getNames() {
+		return names;
+	}
+	
+	// Functions in the last compilation, and how many of them were reused.
+	public int getFunctionCount() {
+		return functionCount;
+	}
+	
+	public int getReusedCount() {
+		return reusedCount;
+	}
+	
+	Entry lookup(String name, long tokenHash, long contextHash, int firstID) {
+		Entry entry = entries.get(name);
+		
+		if (entry == null ||
+			entry.tokenHash != tokenHash ||
+			entry.contextHash != contextHash ||
+			entry.firstID != firstID) {
+			return null;
+		}
+		
+		return entry;
+	}
+	
+	Entry lookup(FunctionDeclaration function, String name) {
+		Entry entry = entries.get(name);
+		
+		return (entry != null && entry.function == function) ? entry : null;
+	}
+	
+	// Replaces all entries with the functions of a successful parse.
+	void update(LinkedHashMap<String, Entry> current, int reused) {
+		entries = new HashMap<>(current);
+		functionCount = current.size();
+		reusedCount = reused;
+	}
+	
+	static long hash(TokenBuffer tokens, int start, int end) {
+		long h = 0xcbf29ce484222325L;
+		
+		for (int i = start; i < end; i++) {
+			h = (h ^ tokens.getKind(i)) * 0x100000001b3L;
+			h = (h ^ tokens.getValue(i)) * 0x100000001b3L;
+		}
+		
+		return h;
+	}
+	
+	static long combine(long h, long value) {
+		return (h ^ value) * 0x100000001b3L;
+	}
+	
+}
@@ -0,0 +1,60 @@
+package processor;
+
+// Perfect hash over the reserved words: (first + 6 * last) & 31 has no
+// collisions among them, so a lookup is one hash and one compare.
+public class Keywords {
+	private static final int TableSize = 32;
+	
+	private static final char[][] words = new char[TableSize][];
+	private static final int[] tokens = new int[TableSize];
+	
+	static {
+		add("then", Sym.thenToken);
+		add("do", Sym.doToken);
+		add("od", Sym.odToken);
+		add("fi", Sym.fiToken);
+		add("else", Sym.elseToken);
+		add("let", Sym.letToken);
+		add("call", Sym.callToken);
+		add("if", Sym.ifToken);
+		add("while", Sym.whileToken);
+		add("return", Sym.returnToken);
+		add("var", Sym.varToken);
+		add("array", Sym.arrToken);
+		add("function", Sym.funcToken);
+		add("procedure", Sym.procToken);
+		add("main", Sym.mainToken);
+	}
+	
+	private static int hash(char first, char last) {
+		return (first + 6 * last) & (TableSize - 1);
+	}
+	
+	private static void add(String word, int token) {
+		int h = hash(word.charAt(0), word.charAt(word.length() - 1));
+		
+		if (words[h] != null) {
+			throw new IllegalStateException("Keyword hash collision: " + word);
+		}
+		
+		words[h] = word.toCharArray();
+		tokens[h] = token;
+	}
+	
+	// Returns the keyword's token, or -1 if the characters are no keyword.
+	public static int lookup(char[] buffer, int length) {
+		if (length == 0) return -1;
+		
+		int h = hash(buffer[0], buffer[length - 1]);
+		char[] word = words[h];
+		
+		if (word == null || word.length != length) return -1;
+		
+		for (int i = 0; i < length; i++) {
+			if (word[i] != buffer[i]) return -1;
+		}
+		
+		return tokens[h];
+	}
+	
+}
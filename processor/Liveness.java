@@ -0,0 +1,97 @@
+package processor;
+
+import java.util.*;
+
+import model.ssa.*;
+
+// Phi arguments are live out of the matching parent (argX left, argY right)
+// rather than live into the merge block, as in RegisterAllocator.
+public class Liveness {
+	private ArrayList<HashSet<Value>> liveIn;
+	private ArrayList<HashSet<Value>> liveOut;
+	
+	public Liveness(Program program, DefUseTable defUseTable) {
+		List<BasicBlock> blocks = program.getBasicBlocks();
+		int blockCount = blocks.size();
+		
+		ArrayList<HashSet<Value>> gen = new ArrayList<>(blockCount);
+		ArrayList<HashSet<Value>> kill = new ArrayList<>(blockCount);
+		ArrayList<HashSet<Value>> leftPhiUses = new ArrayList<>(blockCount);
+		ArrayList<HashSet<Value>> rightPhiUses = new ArrayList<>(blockCount);
+		
+		liveIn = new ArrayList<>(blockCount);
+		liveOut = new ArrayList<>(blockCount);
+		
+		for (BasicBlock block : blocks) {
+			HashSet<Value> g = new HashSet<>();
+			HashSet<Value> k = new HashSet<>();
+			HashSet<Value> l = new HashSet<>();
+			HashSet<Value> r = new HashSet<>();
+			
+			for (int i = block.getInstructions().size() - 1; i >= 0; i--) {
+				Instruction instr = block.getInstructions().get(i);
+				Value definedValue = defUseTable.getDefinedValue(instr.getNumber());
+				
+				if (definedValue != null) {
+					g.remove(definedValue);
+					k.add(definedValue);
+				}
+				
+				if (instr.getOperator() != Instruction.Operator.phi) {
+					for (Value usedValue : defUseTable.getUsedValues(instr.getNumber())) {
+						if (usedValue instanceof ConstantValue) continue;
+						
+						g.add(usedValue);
+					}
+				}else{
+					if ((instr.getArgX() instanceof ConstantValue) == false) l.add(instr.getArgX());
+					if ((instr.getArgY() instanceof ConstantValue) == false) r.add(instr.getArgY());
+				}
+			}
+			
+			gen.add(g);
+			kill.add(k);
+			leftPhiUses.add(l);
+			rightPhiUses.add(r);
+			liveIn.add(new HashSet<>(g));
+			liveOut.add(new HashSet<>());
+		}
+		
+		boolean changed = true;
+		while (changed) {
+			changed = false;
+			
+			for (int b = blockCount - 1; b >= 0; b--) {
+				BasicBlock block = blocks.get(b);
+				HashSet<Value> out = liveOut.get(b);
+				
+				for (int i = 0; i < program.getChildCount(block); i++) {
+					BasicBlock child = program.getChild(block, i);
+					int c = child.getBlockNumber();
+					
+					out.addAll(liveIn.get(c));
+					
+					if (program.isMergeBlock(child)) {
+						out.addAll((program.getLeftParent(child) == block) ? leftPhiUses.get(c) : rightPhiUses.get(c));
+					}
+				}
+				
+				HashSet<Value> in = liveIn.get(b);
+				for (Value value : out) {
+					if (kill.get(b).contains(value) == false && in.add(value)) {
+						changed = true;
+					}
+				}
+			}
+		}
+	}
+	
+	public Set<Value> getLiveIn(BasicBlock block) {
+		return Collections.unmodifiableSet(liveIn.get(block.getBlockNumber()));
+	}
+	
+	public Set<Value> getLiveOut(BasicBlock block) {
+		return Collections.unmodifiableSet(liveOut.get(block.getBlockNumber()));
+	}
+	
+}
@@ -1,22 +1,31 @@
 package processor;
 
+import java.util.*;
+
 import model.syntax.*;
 
 public class MemoryAllocator {
 	private Computation computation;
 	private SymbolTable table;
 	private int globalSpace;
+	private LinkedHashMap<String, Integer> globalOffsets;
 	
 	public MemoryAllocator(Computation cmp, SymbolTable t) {
 		computation = cmp;
 		table = t;
 		globalSpace = 0;
+		globalOffsets = new LinkedHashMap<>();
 	}
 	
 	public int getGlobalSpace() {
 		return globalSpace;
 	}
 	
+	// The offset from gp of each global variable, by name.
+	public Map<String, Integer> getGlobalOffsets() {
+		return globalOffsets;
+	}
+	
 	public void allocate() {
 		for (VariableDeclaration var : computation.variables) {
 			int varSize = var.type.getSize();
@@ -24,6 +33,7 @@ public class MemoryAllocator {
 			for (int id : var.nameIDs) {
 				table.setHasRelativeOffset(id, false);
 				table.setOffset(id, 0 - globalSpace - varSize);
+				globalOffsets.put(table.IDToName(id), 0 - globalSpace - varSize);
 				
 				globalSpace += varSize;
 			}
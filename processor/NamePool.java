@@ -0,0 +1,124 @@
+package processor;
+
+import java.util.*;
+
+public class NamePool {
+	private String[] names;
+	private int[] hashes;
+	private int count;
+	
+	// Open addressing; a slot holds a name index + 1, 0 marks it empty.
+	private int[] slots;
+	
+	public NamePool() {
+		names = new String[64];
+		hashes = new int[64];
+		count = 0;
+		slots = new int[128];
+	}
+	
+	public int size() {
+		return count;
+	}
+	
+	public String getName(int index) {
+		return names[index];
+	}
+	
+	// The hash is String.hashCode(), so lookups by String reuse its cached hash.
+	public int intern(char[] buffer, int length) {
+		int hash = 0;
+		for (int i = 0; i < length; i++) {
+			hash = 31 * hash + buffer[i];
+		}
+		
+		int slot = probe(hash, buffer, length, null);
+		if (slots[slot] != 0) {
+			return slots[slot] - 1;
+		}
+		
+		return insert(slot, hash, new String(buffer, 0, length));
+	}
+	
+	public int intern(String name) {
+		int hash = name.hashCode();
+		
+		int slot = probe(hash, null, 0, name);
+		if (slots[slot] != 0) {
+			return slots[slot] - 1;
+		}
+		
+		return insert(slot, hash, name);
+	}
+	
+	// Returns -1 if the name was never interned.
+	public int find(String name) {
+		int slot = probe(name.hashCode(), null, 0, name);
+		
+		return slots[slot] - 1;
+	}
+	
+	// Returns the slot holding the name, or the empty slot it belongs in.
+	private int probe(int hash, char[] buffer, int length, String name) {
+		int mask = slots.length - 1;
+		int slot = (hash ^ (hash >>> 16)) & mask;
+		
+		while (slots[slot] != 0) {
+			int index = slots[slot] - 1;
+			
+			if (hashes[index] == hash) {
+				if (name != null) {
+					if (names[index] == name || names[index].equals(name)) return slot;
+				}else if (matches(names[index], buffer, length)) {
+					return slot;
+				}
+			}
+			slot = (slot + 1) & mask;
+		}
+		
+		return slot;
+	}
+	
+	private int insert(int slot, int hash, String name) {
+		if (count == names.length) {
+			names = Arrays.copyOf(names, count * 2);
+			hashes = Arrays.copyOf(hashes, count * 2);
+		}
+		
+		int index = count++;
+		names[index] = name;
+		hashes[index] = hash;
+		slots[slot] = index + 1;
+		
+		if (count * 2 > slots.length) {
+			rehash();
+		}
+		
+		return index;
+	}
+	
+	private static boolean matches(String name, char[] buffer, int length) {
+		if (name.length() != length) return false;
+		
+		for (int i = 0; i < length; i++) {
+			if (name.charAt(i) != buffer[i]) return false;
+		}
+		return true;
+	}
+	
+	private void rehash() {
+		slots = new int[slots.length * 2];
+		int mask = slots.length - 1;
+		
+		for (int index = 0; index < count; index++) {
+			int hash = hashes[index];
+			int slot = (hash ^ (hash >>> 16)) & mask;
+			
+			while (slots[slot] != 0) {
+				slot = (slot + 1) & mask;
+			}
+			slots[slot] = index + 1;
+		}
+	}
+	
+}
@@ -1,16 +1,36 @@
 package processor;
 
 import java.util.*;
+import java.util.concurrent.*;
 
 import model.syntax.*;
 
+import jfr.*;
+
 public class Parser {
 	private Scanner scanner;
 	private SymbolTable table;
+	private FunctionCache cache;
+	private SyntaxArena arena;
 	
 	public Parser(String filename) {
-		scanner = new Scanner(filename);
+		this(new Reader(filename));
+	}
+	
+	public Parser(Reader reader) {
+		this(new Scanner(reader));
+	}
+	
+	// Reuses unchanged functions from earlier parses through c.
+	public Parser(Reader reader, FunctionCache c) {
+		this(new Scanner(reader, c.getNames()));
+		cache = c;
+	}
+	
+	private Parser(Scanner s) {
+		scanner = s;
 		table = scanner.table;
+		arena = new SyntaxArena();
 	}
 	
 	public SymbolTable getTable() {
@@ -18,6 +38,28 @@ public class Parser {
 	}
 	
 	public Computation parse() {
+		return parse(null);
+	}
+	
+	// With an executor, function bodies are parsed on its threads.
+	public Computation parse(ExecutorService executor) {
+		ParseEvent event = new ParseEvent();
+		event.begin();
+		
+		Computation comp = parseComputation(executor);
+		
+		event.end();
+		if (event.shouldCommit() && comp != null) {
+			event.unit = PassEvent.currentUnit();
+			event.functions = comp.functions.size();
+			event.statements = comp.arena.getChildCount(comp.body);
+			event.commit();
+		}
+		
+		return comp;
+	}
+	
+	private Computation parseComputation(ExecutorService executor) {
 		Computation comp = new Computation();
 		
 		// Start of Computation:
@@ -35,6 +77,9 @@ public class Parser {
 		}
 		
 		// Functions:
+		if (executor != null || cache != null) {
+			parseFunctionDeclarations(comp, executor);
+		}
 		while (scanner.sym == Sym.funcToken || scanner.sym == Sym.procToken) {
 			FunctionDeclaration funcDecl = parseFunctionDeclaration();
 			
@@ -48,12 +93,15 @@ public class Parser {
 		}
 		scanner.Next();
 		
+		comp.arena = arena;
+		comp.body = arena.add(SyntaxArena.BlockNode, 0, 0);
+		
 		if (scanner.sym == Sym.letToken ||
 			scanner.sym == Sym.callToken || 
 			scanner.sym == Sym.ifToken || 
 			scanner.sym == Sym.whileToken || 
 			scanner.sym == Sym.returnToken) {
-			comp.statements = parseStatementSequence();
+			parseStatementSequence(comp.body);
 		}
 		
 		if (scanner.sym != Sym.endToken) {
@@ -213,6 +261,11 @@ public class Parser {
 		func.nameID = id;
 		
 		scanner.Next();
+		
+		return parseFunctionBody(func);
+	}
+	
+	private FunctionDeclaration parseFunctionBody(FunctionDeclaration func) {
 		table.pushFrame();
 		
 		// Parameters:
@@ -241,12 +294,15 @@ public class Parser {
 		}
 		scanner.Next();
 		
+		func.arena = arena;
+		func.body = arena.add(SyntaxArena.BlockNode, 0, 0);
+		
 		if (scanner.sym == Sym.letToken ||
 			scanner.sym == Sym.callToken || 
 			scanner.sym == Sym.ifToken || 
 			scanner.sym == Sym.whileToken || 
 			scanner.sym == Sym.returnToken) {
-			func.statements = parseStatementSequence();
+			parseStatementSequence(func.body);
 		}
 		
 		if (scanner.sym != Sym.endToken) {
@@ -266,6 +322,217 @@ public class Parser {
 		return func;
 	}
 	
+	private static class FunctionSpan {
+		int startToken;
+		boolean isProcedure;
+		String name;
+		int nameToken;
+		int endToken;
+		int symbolCount;
+	}
+	
+	// Finds the function declarations ahead by their tokens alone; bodies
+	// contain no braces, so each one ends at the first '}'. Returns null if
+	// the declarations are not well-formed enough to split up.
+	private ArrayList<FunctionSpan> scanFunctionDeclarations() {
+		TokenBuffer tokens = scanner.getTokens();
+		NamePool names = scanner.getNames();
+		ArrayList<FunctionSpan> spans = new ArrayList<>();
+		int i = scanner.getIndex();
+		
+		while (i < tokens.size() && (tokens.getKind(i) == Sym.funcToken || tokens.getKind(i) == Sym.procToken)) {
+			FunctionSpan span = new FunctionSpan();
+			span.startToken = i;
+			span.isProcedure = tokens.getKind(i) == Sym.procToken;
+			i++;
+			
+			if (i >= tokens.size() || tokens.getKind(i) != Sym.ident) return null;
+			span.name = names.getName(tokens.getValue(i));
+			span.nameToken = i;
+			i++;
+			
+			// Every identifier before the body declares a parameter or variable.
+			while (i < tokens.size() && tokens.getKind(i) != Sym.beginToken) {
+				int kind = tokens.getKind(i);
+				if (kind == Sym.ident) span.symbolCount++;
+				else if (kind == Sym.endToken || kind == Sym.eofToken) return null;
+				i++;
+			}
+			i++;
+			
+			while (i < tokens.size() && tokens.getKind(i) != Sym.endToken) {
+				int kind = tokens.getKind(i);
+				if (kind == Sym.beginToken || kind == Sym.eofToken) return null;
+				i++;
+			}
+			i++;
+			
+			if (i >= tokens.size() || tokens.getKind(i) != Sym.semiToken) return null;
+			i++;
+			
+			if (i >= tokens.size()) return null;
+			span.endToken = i;
+			
+			spans.add(span);
+		}
+		
+		return spans;
+	}
+	
+	// Declares all signatures in order, leaving as many IDs after each as its
+	// body will declare, so symbol IDs come out as in a serial parse. Each
+	// body is then parsed into an overlay table that only sees the functions
+	// declared up to its own, like the serial parse, or taken from the
+	// function cache if it is unchanged. If anything goes wrong the
+	// declarations are rolled back and the serial parse reports it.
+	private void parseFunctionDeclarations(Computation comp, ExecutorService executor) {
+		ArrayList<FunctionSpan> spans = scanFunctionDeclarations();
+		if (spans == null || spans.size() == 0 || (spans.size() < 2 && cache == null)) {
+			return;
+		}
+		
+		int declarationCount = table.getDeclarationCount();
+		int nextID = table.getNextID();
+		int[] ids = new int[spans.size()];
+		
+		for (int i = 0; i < spans.size(); i++) {
+			FunctionSpan span = spans.get(i);
+			
+			if (table.getLocalFrame().hasVerbName(span.name)) {
+				table.rollback(declarationCount, nextID);
+				return;
+			}
+			
+			if (span.isProcedure) {
+				ids[i] = table.addProcedure(span.name, 0);
+			}else{
+				ids[i] = table.addFunction(span.name, 0);
+			}
+			table.reserveIDs(span.symbolCount);
+		}
+		
+		TokenBuffer tokens = scanner.getTokens();
+		long context = FunctionCache.hash(tokens, 0, scanner.getIndex());
+		
+		String unit = PassEvent.currentUnit();
+		FunctionCache.Entry[] entries = new FunctionCache.Entry[spans.size()];
+		ArrayList<SymbolTable> overlays = new ArrayList<>();
+		ArrayList<Future<FunctionDeclaration>> tasks = new ArrayList<>();
+		int reused = 0;
+		
+		for (int i = 0; i < spans.size(); i++) {
+			FunctionSpan span = spans.get(i);
+			int id = ids[i];
+			
+			if (cache != null) {
+				long tokenHash = FunctionCache.hash(tokens, span.startToken, span.endToken);
+				FunctionCache.Entry entry = cache.lookup(span.name, tokenHash, context, id);
+				
+				if (entry != null) {
+					reused++;
+				}else{
+					entry = new FunctionCache.Entry();
+					entry.tokenHash = tokenHash;
+					entry.contextHash = context;
+					entry.firstID = id;
+				}
+				entries[i] = entry;
+				
+				context = FunctionCache.combine(context, tokens.getKind(span.startToken));
+				context = FunctionCache.combine(context, tokens.getValue(span.nameToken));
+				context = FunctionCache.combine(context, id);
+				
+				if (entry.function != null) {
+					overlays.add(entry.symbols);
+					tasks.add(CompletableFuture.completedFuture(entry.function));
+					continue;
+				}
+			}
+			
+			SymbolTable overlay = new SymbolTable(table, id + 1, id);
+			Scanner cursor = new Scanner(scanner, overlay);
+			
+			Callable<FunctionDeclaration> task = () -> {
+				PassEvent.enterUnit(unit);
+				try {
+					cursor.seek(span.nameToken + 1);
+					
+					FunctionDeclaration func = new FunctionDeclaration();
+					func.isProcedure = span.isProcedure;
+					func.nameID = id;
+					
+					func = new Parser(cursor).parseFunctionBody(func);
+					
+					if (cursor.getIndex() != span.endToken || overlay.getNextID() != id + 1 + span.symbolCount) {
+						return null;
+					}
+					return func;
+				} finally {
+					PassEvent.exitUnit();
+				}
+			};
+			
+			overlays.add(overlay);
+			if (executor != null) {
+				tasks.add(executor.submit(task));
+			}else{
+				FutureTask<FunctionDeclaration> inline = new FutureTask<>(task);
+				inline.run();
+				tasks.add(inline);
+			}
+		}
+		
+		// Wait for every task before touching the table again.
+		ArrayList<FunctionDeclaration> functions = new ArrayList<>();
+		boolean failed = false;
+		boolean interrupted = false;
+		
+		for (Future<FunctionDeclaration> task : tasks) {
+			while (true) {
+				try {
+					FunctionDeclaration func = task.get();
+					
+					failed |= (func == null);
+					functions.add(func);
+				} catch (ExecutionException e) {
+					failed = true;
+				} catch (InterruptedException e) {
+					interrupted = true;
+					continue;
+				}
+				break;
+			}
+		}
+		if (interrupted) {
+			Thread.currentThread().interrupt();
+		}
+		
+		if (failed) {
+			table.rollback(declarationCount, nextID);
+			return;
+		}
+		
+		for (SymbolTable overlay : overlays) {
+			table.adopt(overlay);
+		}
+		comp.functions.addAll(functions);
+		
+		if (cache != null) {
+			LinkedHashMap<String, FunctionCache.Entry> current = new LinkedHashMap<>();
+			
+			for (int i = 0; i < spans.size(); i++) {
+				if (entries[i].function == null) {
+					entries[i].function = functions.get(i);
+					entries[i].symbols = overlays.get(i);
+				}
+				current.put(spans.get(i).name, entries[i]);
+			}
+			cache.update(current, reused);
+		}
+		
+		scanner.seek(spans.get(spans.size() - 1).endToken);
+	}
+	
 	private ArrayList<Integer> parseFormalParameters() {
 		ArrayList<Integer> params = new ArrayList<>();
 		
@@ -308,25 +575,21 @@ public class Parser {
 		return params;
 	}
 	
-	private ArrayList<Statement> parseStatementSequence() {
-		ArrayList<Statement> stmts = new ArrayList<>();
+	private void parseStatementSequence(int block) {
+		int stmt = parseStatement();
 		
-		Statement stmt = parseStatement();
-		
-		stmts.add(stmt);
+		arena.appendChild(block, stmt);
 		
 		while (scanner.sym == Sym.semiToken) {
 			scanner.Next();
 			
 			stmt = parseStatement();
 			
-			stmts.add(stmt);
+			arena.appendChild(block, stmt);
 		}
-		
-		return stmts;
 	}
 	
-	private Statement parseStatement() {
+	private int parseStatement() {
 		switch (scanner.sym) {
 		case Sym.letToken:
 			return parseAssignment();
@@ -340,63 +603,62 @@ public class Parser {
 			return parseReturnStatement();
 		default:
 			scanner.Error("Expected 'let', 'call' 'if' 'while' or 'return'");
-			return null;
+			return -1;
 		}
 	}
 	
-	private Assignment parseAssignment() {
-		Assignment assign = new Assignment();
+	private int parseAssignment() {
+		int assign = arena.add(SyntaxArena.AssignmentNode, 0, 0);
 		
 		// Let:
 		if (scanner.sym != Sym.letToken) {
 			scanner.Error("Expected 'let'");
-			return null;
+			return -1;
 		}
 		scanner.Next();
 		
 		// Designator:
-		assign.designator = parseDesignator();
+		arena.appendChild(assign, parseDesignator());
 		
 		// Arrow:
 		if (scanner.sym != Sym.becomesToken) {
 			scanner.Error("Expected '<-'");
-			return null;
+			return -1;
 		}
 		scanner.Next();
 		
 		// Expression:
-		Expression ex = parseExpression();
+		int ex = parseExpression();
 		
-		assign.expression = ex;
+		arena.appendChild(assign, ex);
 		
 		return assign;
 	}
 	
-	public FunctionCall parseFunctionCall() {
-		FunctionCall func = new FunctionCall();
-		
+	public int parseFunctionCall() {
 		// Call:
 		if (scanner.sym != Sym.callToken) {
 			scanner.Error("Expected 'call'");
-			return null;
+			return -1;
 		}
 		scanner.Next();
 		
 		// Name:
 		if (scanner.sym != Sym.ident) {
 			scanner.Error("Expected identifier");
-			return null;
+			return -1;
 		}
 		
 		if (!table.hasVerbName(scanner.name)) {
 			scanner.Error("Unknown function");
-			return null;
+			return -1;
 		}
-		func.functionID = table.verbNameToID(scanner.name);
-		if (!(table.isProcedure(func.functionID) || table.isFunction(func.functionID))) {
+		int functionID = table.verbNameToID(scanner.name);
+		if (!(table.isProcedure(functionID) || table.isFunction(functionID))) {
 			scanner.Error("Identifier is neither a procedure nor function");
-			return null;
+			return -1;
 		}
+		int func = arena.add(SyntaxArena.CallNode, 0, functionID);
 		
 		scanner.Next();
 		
@@ -411,48 +673,53 @@ public class Parser {
 			return func;
 		}
 		
-		Expression ex = parseExpression();
+		int ex = parseExpression();
 		
-		func.parameterExpressions.add(ex);
+		arena.appendChild(func, ex);
 		
 		while (scanner.sym == Sym.commaToken) {
 			scanner.Next();
 			
 			ex = parseExpression();
 			
-			func.parameterExpressions.add(ex);
+			arena.appendChild(func, ex);
 		}
 		
 		if (scanner.sym != Sym.closeparenToken) {
 			scanner.Error("Expected ')'");
-			return null;
+			return -1;
 		}
 		scanner.Next();
 		
 		return func;
 	}
 	
-	public IfStatement parseIfStatement() {
-		IfStatement ifs = new IfStatement();
+	public int parseIfStatement() {
+		int ifs = arena.add(SyntaxArena.IfNode, 0, 0);
 		
 		// If:
 		if (scanner.sym != Sym.ifToken) {
 			scanner.Error("Expected 'if'");
-			return null;
+			return -1;
 		}
 		scanner.Next();
 		
 		// Relation:
-		ifs.relation = parseRelation();
+		arena.appendChild(ifs, parseRelation());
 		
 		// Then:
 		if (scanner.sym != Sym.thenToken) {
 			scanner.Error("Expected 'then'");
-			return null;
+			return -1;
 		}
 		scanner.Next();
 		
-		ifs.thenStatements = parseStatementSequence();
+		int thenBlock = arena.add(SyntaxArena.BlockNode, 0, 0);
+		int elseBlock = arena.add(SyntaxArena.BlockNode, 0, 0);
+		arena.appendChild(ifs, thenBlock);
+		arena.appendChild(ifs, elseBlock);
+		
+		parseStatementSequence(thenBlock);
 		
 		if (scanner.sym == Sym.fiToken) {
 			scanner.Next();
@@ -463,59 +730,62 @@ public class Parser {
 		// Else:
 		if (scanner.sym != Sym.elseToken) {
 			scanner.Error("Expected 'else' or 'fi'");
-			return null;
+			return -1;
 		}
 		scanner.Next();
 		
-		ifs.elseStatements = parseStatementSequence();
+		parseStatementSequence(elseBlock);
 		
 		if (scanner.sym != Sym.fiToken) {
 			scanner.Error("Expected 'fi'");
-			return null;
+			return -1;
 		}
 		scanner.Next();
 		
 		return ifs;
 	}
 	
-	public WhileStatement parseWhileStatement() {
-		WhileStatement whiles = new WhileStatement();
+	public int parseWhileStatement() {
+		int whiles = arena.add(SyntaxArena.WhileNode, 0, 0);
 		
 		// While:
 		if (scanner.sym != Sym.whileToken) {
 			scanner.Error("Expected 'while'");
-			return null;
+			return -1;
 		}
 		scanner.Next();
 		
 		// Relation:
-		whiles.relation = parseRelation();
+		arena.appendChild(whiles, parseRelation());
 		
 		// Do:
 		if (scanner.sym != Sym.doToken) {
 			scanner.Error("Expected 'do'");
-			return null;
+			return -1;
 		}
 		scanner.Next();
 		
-		whiles.statements = parseStatementSequence();
+		int block = arena.add(SyntaxArena.BlockNode, 0, 0);
+		arena.appendChild(whiles, block);
+		
+		parseStatementSequence(block);
 		
 		if (scanner.sym != Sym.odToken) {
 			scanner.Error("Expected 'od'");
-			return null;
+			return -1;
 		}
 		scanner.Next();
 		
 		return whiles;
 	}
 	
-	public ReturnStatement parseReturnStatement() {
-		ReturnStatement returns = new ReturnStatement();
+	public int parseReturnStatement() {
+		int returns = arena.add(SyntaxArena.ReturnNode, 0, 0);
 		
 		// Return:
 		if (scanner.sym != Sym.returnToken) {
 			scanner.Error("Expected 'return'");
-			return null;
+			return -1;
 		}
 		scanner.Next();
 		
@@ -524,105 +794,108 @@ public class Parser {
 			scanner.sym == Sym.number || 
 			scanner.sym == Sym.openparenToken || 
 			scanner.sym == Sym.callToken) {
-			returns.expression = parseExpression();			
+			arena.appendChild(returns, parseExpression());			
 		}
 		
 		return returns;
 	}
 	
-	public Relation parseRelation() {
-		Relation rel = new Relation();
-		
+	public int parseRelation() {
 		// LHS:
-		rel.lhs = parseExpression();
+		int lhs = parseExpression();
 		
 		// Operator:
+		Relation.Operator op;
 		switch (scanner.sym) {
 		case Sym.lssToken:
-			rel.op = Relation.Operator.LessThan;
+			op = Relation.Operator.LessThan;
 			break;
 		case Sym.leqToken:
-			rel.op = Relation.Operator.LessThanOrEqual;
+			op = Relation.Operator.LessThanOrEqual;
 			break;
 		case Sym.eqlToken:
-			rel.op = Relation.Operator.Equal;
+			op = Relation.Operator.Equal;
 			break;
 		case Sym.neqToken:
-			rel.op = Relation.Operator.NotEqual;
+			op = Relation.Operator.NotEqual;
 			break;
 		case Sym.geqToken:
-			rel.op = Relation.Operator.GreaterThanOrEqual;
+			op = Relation.Operator.GreaterThanOrEqual;
 			break;
 		case Sym.gtrToken:
-			rel.op = Relation.Operator.GreaterThan;
+			op = Relation.Operator.GreaterThan;
 			break;
 		default:
 			scanner.Error("Excpected '<', '<=', '==', '!=', '>=' or '>'");
-			return null;
+			return -1;
 		}
 		scanner.Next();
 		
-		rel.rhs = parseExpression();
+		int rel = arena.add(SyntaxArena.RelationNode, op.ordinal(), 0);
+		arena.appendChild(rel, lhs);
+		arena.appendChild(rel, parseExpression());
 		
 		return rel;
 	}
 	
-	public Expression parseExpression() {
-		Expression ex = new Expression();
+	public int parseExpression() {
+		int ex = arena.add(SyntaxArena.ExpressionNode, 0, 0);
 		
-		Term t = parseTerm();
+		int t = parseTerm();
 		
-		ex.terms.add(t);
+		arena.appendChild(ex, t);
 		
 		while (scanner.sym == Sym.plusToken ||
 			   scanner.sym == Sym.minusToken) {
+			Expression.Operator op;
 			if (scanner.sym == Sym.plusToken) {
-				ex.operators.add(Expression.Operator.Plus);
+				op = Expression.Operator.Plus;
 			}else {
-				ex.operators.add(Expression.Operator.Minus);
+				op = Expression.Operator.Minus;
 			}
 			scanner.Next();
 			
 			t = parseTerm();
 			
-			ex.terms.add(t);
+			arena.setOp(t, op.ordinal());
+			arena.appendChild(ex, t);
 		}
 		
 		return ex;
 	}
 	
-	public Term parseTerm() {
-		Term t = new Term();
+	public int parseTerm() {
+		int t = arena.add(SyntaxArena.TermNode, 0, 0);
 		
-		Factor f = parseFactor();
+		int f = parseFactor();
 		
-		t.factors.add(f);
+		arena.appendChild(t, f);
 		
 		while (scanner.sym == Sym.timesToken || 
 			   scanner.sym == Sym.divideToken) {
+			Term.Operator op;
 			if (scanner.sym == Sym.timesToken) {
-				t.operators.add(Term.Operator.Times);
+				op = Term.Operator.Times;
 			}else{
-				t.operators.add(Term.Operator.Divide);
+				op = Term.Operator.Divide;
 			}
 			scanner.Next();
 			
 			f = parseFactor();
 			
-			t.factors.add(f);
+			arena.setOp(f, op.ordinal());
+			arena.appendChild(t, f);
 		}
 		
 		return t;
 	}
 	
-	public Factor parseFactor() {
+	public int parseFactor() {
 		switch (scanner.sym) {
 		case Sym.ident:
 			return parseDesignator();
 		case Sym.number:
-			Constant c = new Constant();
-			
-			c.value = scanner.val;
+			int c = arena.add(SyntaxArena.ConstantNode, 0, scanner.val);
 			
 			scanner.Next();
 			
@@ -630,11 +903,11 @@ public class Parser {
 		case Sym.openparenToken:
 			scanner.Next();
 			
-			Expression ex = parseExpression();
+			int ex = parseExpression();
 			
 			if (scanner.sym != Sym.closeparenToken) {
 				scanner.Error("Expected ')'");
-				return null;
+				return -1;
 			}
 			scanner.Next();
 			
@@ -643,49 +916,48 @@ public class Parser {
 			return parseFunctionCall();
 		default:
 			scanner.Error("Expected designator, number, expression or function call");
-			return null;
+			return -1;
 		}
 	}
 	
-	public Designator parseDesignator() {
-		Designator d = new Designator();
-		
+	public int parseDesignator() {
 		if (scanner.sym != Sym.ident) {
 			scanner.Error("Expected identifier");
-			return null;
+			return -1;
 		}
 		
 		if (!table.hasNounName(scanner.name)) {
 			scanner.Error("Unknown identifier");
-			return null;
+			return -1;
 		}
-		d.id = table.nounNameToID(scanner.name);
+		int id = table.nounNameToID(scanner.name);
+		int d = arena.add(SyntaxArena.DesignatorNode, 0, id);
 		
 		scanner.Next();
 		
 		while (scanner.sym == Sym.openbracketToken) {
 			scanner.Next();
 			
-			Expression ex = parseExpression();
+			int ex = parseExpression();
 			
-			d.indexExpressions.add(ex);
+			arena.appendChild(d, ex);
 			
 			if (scanner.sym != Sym.closebracketToken) {
 				scanner.Error("Expected ']'");
-				return null;
+				return -1;
 			}
 			scanner.Next();
 		}
 		
-		if (d.indexExpressions.size() == 0) {
-			if (!table.isVariable(d.id)) {
+		if (arena.getFirstChild(d) == -1) {
+			if (!table.isVariable(id)) {
 				scanner.Error("Expected variable identifier");
-				return null;
+				return -1;
 			}
 		}else {
-			if (!table.isArray(d.id)) {
+			if (!table.isArray(id)) {
 				scanner.Error("Expected array identifier");
-				return null;
+				return -1;
 			}
 		}
 		
@@ -1,61 +1,161 @@
 package processor;
 
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
 
 public class Reader {
-	private File file;
-	private FileReader reader;
-	private StringBuilder contents;
+	private static final long MappedThreshold = 1 << 20;
+	
+	private ByteBuffer bytes;
+	private int offset;
+	private CharSequence chars;
+	private int length;
+	private int position;
+	
+	private int[] lineStarts;
+	private int lineCount;
 	
 	public char sym;
 
 	public Reader(String fileName) {
-		try {
-			file = new File(fileName);
-			reader = new FileReader(file);
-			contents = new StringBuilder();
+		this(load(fileName));
+	}
+	
+	public Reader(CharSequence source) {
+		bytes = null;
+		offset = 0;
+		chars = source;
+		length = source.length();
+		position = -1;
+		
+		Next();
+	}
+	
+	public Reader(ByteBuffer source) {
+		bytes = source;
+		offset = source.position();
+		chars = null;
+		length = source.remaining();
+		position = -1;
+		
+		Next();
+	}
+	
+	private static ByteBuffer load(String fileName) {
+		try (FileChannel channel = FileChannel.open(Paths.get(fileName), StandardOpenOption.READ)) {
+			long size = channel.size();
 			
-			int d = reader.read();
-			if (d == -1) sym = 0xff;
-			else sym = (char)d;
-			contents.append((char)sym);
-		} catch (IOException e) {
-			e.printStackTrace();
+			if (size >= MappedThreshold) {
+				return channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+			}
 			
-			System.exit(0);
+			ByteBuffer buffer = ByteBuffer.allocate((int)size);
+			while (buffer.hasRemaining()) {
+				if (channel.read(buffer) < 0) break;
+			}
+			buffer.flip();
+			
+			return buffer;
+			
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
 		}
 	}
 	
 	public void Next() {
-		try {
-			int d = reader.read();
-			if (d == -1) sym = 0xff;
-			else sym = (char)d;
-			contents.append((char)sym);
-		} catch (IOException e) {
-			e.printStackTrace();
+		position++;
+		
+		if (position >= length) sym = 0xff;
+		else if (bytes != null) sym = (char)(bytes.get(offset + position) & 0xff);
+		else sym = chars.charAt(position);
+	}
+	
+	public int getPosition() {
+		return position;
+	}
+	
+	private char charAt(int index) {
+		if (bytes != null) return (char)(bytes.get(offset + index) & 0xff);
+		else return chars.charAt(index);
+	}
+	
+	// Built on first use; parser threads may report errors concurrently.
+	private synchronized int[] getLineStarts() {
+		if (lineStarts == null) {
+			buildLineIndex();
+		}
+		return lineStarts;
+	}
+	
+	private void buildLineIndex() {
+		int[] starts = new int[16];
+		int count = 1;
+		
+		for (int i = 0; i < length; i++) {
+			if (charAt(i) != '\n') continue;
 			
-			System.exit(0);
+			if (count == starts.length) {
+				int[] grown = new int[starts.length * 2];
+				System.arraycopy(starts, 0, grown, 0, count);
+				starts = grown;
+			}
+			starts[count++] = i + 1;
 		}
+		
+		lineCount = count;
+		lineStarts = starts;
 	}
 	
-	public void Error(String errorMsg) {
-		int c = contents.length() - 1;
+	// Line numbers start at 1.
+	public int getLine(int index) {
+		int[] starts = getLineStarts();
 		
-		while (sym != 0xff && sym != '\n') {
-			Next();
+		int lo = 0;
+		int hi = lineCount - 1;
+		while (lo < hi) {
+			int mid = (lo + hi + 1) >>> 1;
+			
+			if (starts[mid] <= index) lo = mid;
+			else hi = mid - 1;
 		}
-		contents.setLength(contents.length() - 1);
 		
-		int s = contents.lastIndexOf("\n") + 1;
+		return lo + 1;
+	}
+	
+	public int getLineStart(int line) {
+		return getLineStarts()[line - 1];
+	}
+	
+	public int getLineEnd(int line) {
+		int[] starts = getLineStarts();
+		
+		return (line < lineCount) ? starts[line] - 1 : length;
+	}
+	
+	public void Error(String errorMsg) {
+		Error(errorMsg, position);
+	}
+	
+	public void Error(String errorMsg, int index) {
+		int c = Math.min(index, length);
+		int line = getLine(c);
+		int s = getLineStart(line);
+		int e = getLineEnd(line);
 		
-		System.err.println(errorMsg);
-		System.err.println(contents.substring(s));
+		StringBuilder bob = new StringBuilder();
+		bob.append(errorMsg + "\n");
+		for (int i = s; i < e; i++) {
+			bob.append(charAt(i));
+		}
+		bob.append("\n");
 		for (int i = 0; i < c - s; i++) {
-			System.err.print(' ');
+			bob.append(' ');
 		}
-		System.err.println("^");
-		System.exit(0);
+		bob.append("^");
+		
+		throw new CompilationException(bob.toString());
 	}
 	
 }
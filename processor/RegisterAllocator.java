@@ -4,11 +4,14 @@ import java.util.*;
 
 import model.ssa.*;
 
+import jfr.*;
+
 import vcg.*;
 
 public class RegisterAllocator {
 	private Program program;
 	private DefUseTable defUseTable;
+	private Liveness liveness;
 	
 	private HashMap<Value, HashSet<Value>> graph;
 	private HashMap<Value, Integer> colors;
@@ -16,14 +19,15 @@ public class RegisterAllocator {
 	
 	private HashMap<Value, Value> replacements;
 
-	private StringBuilder liveRangeTrace;
-	private StringBuilder regAssignmentsTrace;
+	private TraceSink liveRangeTrace;
+	private TraceSink regAssignmentsTrace;
 	
-	public static int moveInstrCount = 0;
+	private int moveInstrCount;
 	
-	public RegisterAllocator(Program pgm, DefUseTable dut, StringBuilder p, StringBuilder r) {
+	public RegisterAllocator(Program pgm, DefUseTable dut, Liveness l, TraceSink p, TraceSink r) {
 		program = pgm;
 		defUseTable = dut;
+		liveness = l;
 		
 		graph = new HashMap<>();
 		colors = new HashMap<>();
@@ -33,13 +37,56 @@ public class RegisterAllocator {
 		
 		liveRangeTrace = p;
 		regAssignmentsTrace = r;
+		
+		moveInstrCount = 0;
+	}
+	
+	public int getMoveInstrCount() {
+		return moveInstrCount;
+	}
+	
+	public int getInterferenceNodeCount() {
+		return graph.size();
+	}
+	
+	public int getInterferenceEdgeCount() {
+		int count = 0;
+		for (HashSet<Value> neighbours : graph.values()) {
+			count += neighbours.size();
+		}
+		return count / 2;
 	}
 	
 	public void allocate() {
+		InterferenceEvent interferenceEvent = new InterferenceEvent();
+		interferenceEvent.begin();
+		
 		findInterferences();
+		
+		interferenceEvent.end();
+		if (interferenceEvent.shouldCommit()) {
+			interferenceEvent.unit = PassEvent.currentUnit();
+			interferenceEvent.instructions = program.getInstructionCount();
+			interferenceEvent.nodes = getInterferenceNodeCount();
+			interferenceEvent.edges = getInterferenceEdgeCount();
+			interferenceEvent.commit();
+		}
+		
+		ColoringEvent coloringEvent = new ColoringEvent();
+		coloringEvent.begin();
+		
 		findColoring();
 		findReplacements();
 		applyReplacements();
+		
+		coloringEvent.end();
+		if (coloringEvent.shouldCommit()) {
+			coloringEvent.unit = PassEvent.currentUnit();
+			coloringEvent.values = colors.size();
+			coloringEvent.colorsUsed = (int)colors.values().stream().distinct().filter(c -> c >= 0).count();
+			coloringEvent.movesInserted = moveInstrCount;
+			coloringEvent.commit();
+		}
 	}
 	
 	private static boolean needsColor(Value v) {
@@ -92,108 +139,28 @@ public class RegisterAllocator {
 	
 	private void findInterferences() {
 		for (BasicBlock block : program.getBasicBlocks()) {
-			if (program.getChildren(block).size() > 0) continue;
-			
-			findInterferencesFromBlock(block);
-		}
-	}
-	
-	private void findInterferencesFromBlock(BasicBlock start) {
-		HashMap<BasicBlock, HashSet<Value>> inLiveValues = new HashMap<>();
-		
-		inLiveValues.put(start, new HashSet<>());
-		
-		HashMap<BasicBlock, Integer> whileTopBlocksCounts = new HashMap<>();
-		HashSet<BasicBlock> ifTopBlocksSet = new HashSet<>();
-		LinkedList<BasicBlock> ifTopBlocksStack = new LinkedList<>();
-		LinkedList<BasicBlock> queue = new LinkedList<>();
-		
-		queue.add(start);
-		
-		while (queue.size() > 0 || ifTopBlocksStack.size() > 0) {
-			BasicBlock block;
-			
-			if (queue.size() > 0) {
-				block = queue.removeLast();
-				
-			}else{
-				liveRangeTrace.append("| ");
-				
-				block = ifTopBlocksStack.pop();
-				
-				ifTopBlocksSet.remove(block);
+			if (liveRangeTrace.isEnabled()) {
+				liveRangeTrace.trace("{%d} ", block.getBlockNumber());
 			}
-			liveRangeTrace.append(String.format("{%d} ", block.getBlockNumber()));
 			
-			List<BasicBlock> parents = program.getParents(block);
+			HashSet<Value> liveValues = new HashSet<>();
 			
-			HashSet<Value> liveValues = inLiveValues.get(block);
-			HashSet<Value> outLeftLiveValues = new HashSet<>();
-			HashSet<Value> outRightLiveValues = new HashSet<>();
-			
-			findInterferencesInBlock(block,
-									liveValues, 
-									outLeftLiveValues, 
-									outRightLiveValues);
-			
-			if (parents.size() == 1) {
-				BasicBlock parent = parents.get(0);
-				
-				inLiveValues.putIfAbsent(parent, new HashSet<>());
-				inLiveValues.get(parent).addAll(liveValues);
-				
-			}else if (parents.size() == 2) {
-				BasicBlock leftParent = parents.get(0);
-				BasicBlock rightParent = parents.get(1);
+			for (Value liveValue : liveness.getLiveOut(block)) {
+				addValue(liveValue);
+				addInterferences(liveValues, liveValue);
 				
-				inLiveValues.putIfAbsent(leftParent, new HashSet<>());
-				inLiveValues.get(leftParent).addAll(outLeftLiveValues);
-				
-				inLiveValues.putIfAbsent(rightParent, new HashSet<>());
-				inLiveValues.get(rightParent).addAll(outRightLiveValues);
+				liveValues.add(liveValue);
 			}
 			
-			if (block.isWhileTopBlock()) {
-				if (whileTopBlocksCounts.getOrDefault(block, 0) == 0) {
-					whileTopBlocksCounts.put(block, 1);
-					
-					BasicBlock rightParent = parents.get(1);
-					
-					queue.add(rightParent);
-					
-				}else if (whileTopBlocksCounts.get(block) == 1){
-					whileTopBlocksCounts.put(block, 2);
-					
-					BasicBlock leftParent = parents.get(0);
-					
-					if (ifTopBlocksSet.contains(leftParent)) continue;
-					
-					queue.add(leftParent);	
-				}
-				
-			}else if (block.isIfFollowBlock()) {
-				BasicBlock topBlock = program.getDirectDominator(block);
-				
-				ifTopBlocksSet.add(topBlock);
-				ifTopBlocksStack.push(topBlock);
-				queue.addAll(program.getParents(block));
-				
-			}else if (parents.size() > 0) {
-				BasicBlock parent = program.getParents(block).get(0);
-				
-				if (ifTopBlocksSet.contains(parent)) continue;
-				
-				queue.add(parent);
-			}
+			findInterferencesInBlock(block, liveValues);
 		}
 		
-		liveRangeTrace.append("\n");
+		if (liveRangeTrace.isEnabled()) {
+			liveRangeTrace.trace("\n");
+		}
 	}
 	
-	private void findInterferencesInBlock(BasicBlock block,
-								         HashSet<Value> liveValues,
-								         HashSet<Value> leftLiveValues,
-								         HashSet<Value> rightLiveValues) {
+	private void findInterferencesInBlock(BasicBlock block, HashSet<Value> liveValues) {
 		for (int i = block.getInstructions().size() - 1; i >= 0; i--) {
 			Instruction instr = block.getInstructions().get(i);
 			int instrNum = instr.getNumber();
@@ -205,7 +172,7 @@ public class RegisterAllocator {
 			}
 			
 			if (instr.getOperator() == Instruction.Operator.call) {
-				instr.setLiveValues(liveValues);
+				instr.setLiveValues(new HashSet<>(liveValues));
 			}
 			
 			if (instr.getOperator() != Instruction.Operator.phi) {
@@ -228,18 +195,10 @@ public class RegisterAllocator {
 				addValue(argZ);
 				addInterferences(liveValues, argX);
 				addInterferences(liveValues, argY);
-				addInterferences(leftLiveValues, argX);
-				addInterferences(rightLiveValues, argY);
 				addPhiPartners(argX, argZ);
 				addPhiPartners(argY, argZ);
-				
-				leftLiveValues.add(argX);
-				rightLiveValues.add(argY);
 			}
 		}
-		
-		leftLiveValues.addAll(liveValues);
-		rightLiveValues.addAll(liveValues);
 	}
 	
 	private void findColoring() {
@@ -270,9 +229,13 @@ public class RegisterAllocator {
 				badColors.add(colors.get(neighbor));
 			}
 			
-			regAssignmentsTrace.append(String.format("%3d assigning %5s... ", i, value));
+			if (regAssignmentsTrace.isEnabled()) {
+				regAssignmentsTrace.trace("%3d assigning %5s... ", i, value);
+			}
 			if (phiPartners.containsKey(value)) {
-				regAssignmentsTrace.append(String.format("\n%5s is looking for a partner:\n", value));
+				if (regAssignmentsTrace.isEnabled()) {
+					regAssignmentsTrace.trace("\n%5s is looking for a partner:\n", value);
+				}
 			}
 			
 			if (potentialPartnerCount > 0) potentialPartnerCount--;
@@ -281,30 +244,40 @@ public class RegisterAllocator {
 				
 				if (partnerColor != -1) {
 					if (badColors.contains(partnerColor)) {
-						regAssignmentsTrace.append(String.format("%5s + %5s = </3\n", value, partner));
+						if (regAssignmentsTrace.isEnabled()) {
+							regAssignmentsTrace.trace("%5s + %5s = </3\n", value, partner);
+						}
 						continue;
 					}
 					if (colors.get(value) != -1) continue;
 					colors.put(value, partnerColor);
-					regAssignmentsTrace.append(String.format("%5s + %5s = <3\n", value, partner));
+					if (regAssignmentsTrace.isEnabled()) {
+						regAssignmentsTrace.trace("%5s + %5s = <3\n", value, partner);
+					}
 				}else{
 					int index = i + 1 + potentialPartnerCount++;
 					if (index < sortedValues.size()) {
 						sortedValues.remove(partner);
 						sortedValues.add(index, partner);
 					}
-					regAssignmentsTrace.append(String.format("%5s + %5s = ???\n", value, partner));
+					if (regAssignmentsTrace.isEnabled()) {
+						regAssignmentsTrace.trace("%5s + %5s = ???\n", value, partner);
+					}
 				}
 			}
 			if (colors.get(value) != -1) {
-				regAssignmentsTrace.append("found color: " + colors.get(value) + "\n");
+				if (regAssignmentsTrace.isEnabled()) {
+					regAssignmentsTrace.trace("found color: " + colors.get(value) + "\n");
+				}
 				continue;
 			}
 			
 			for (int color = 0; color <= neighbors.size(); color++) {
 				if (badColors.contains(color)) continue;
 				colors.put(value, color);
-				regAssignmentsTrace.append("found color: " + color + "\n");
+				if (regAssignmentsTrace.isEnabled()) {
+					regAssignmentsTrace.trace("found color: " + color + "\n");
+				}
 				continue colorFinder;
 			}
 		}
@@ -313,18 +286,15 @@ public class RegisterAllocator {
 	private void findReplacements() {
 		for (Value value : graph.keySet()) {
 			int color = colors.get(value);
-			replacements.put(value, new RegisterValue(color + 1));
+			replacements.put(value, program.getValues().register(color + 1));
 		}
 	}
 	
 	private void applyReplacements() {
 		for (BasicBlock block : program.getBasicBlocks()) {
-			for (int i = 0; i < block.getInstructions().size(); i++) {
-				Instruction instr = block.getInstructions().get(i);
-				
+			for (Instruction instr = block.getFirstInstruction(); instr != null; instr = instr.getNext()) {
 				if (instr.getOperator() == Instruction.Operator.phi) {
 					block.eliminateInstruction(instr);
-					i--;
 					
 					Value argX = instr.getArgX();
 					Value argY = instr.getArgY();
@@ -335,8 +305,7 @@ public class RegisterAllocator {
 					
 					if (argXR.equals(argZR) == false) {
 						BasicBlock leftParent = program.getLeftParent(block);
-						int insertionIndex = leftParent.getIndexOfLastNonBranchInstruction();
-						Instruction moveInstr = leftParent.addInstruction(insertionIndex);
+						Instruction moveInstr = leftParent.addInstructionBefore(leftParent.getFirstTrailingBranch());
 						moveInstr.setOperator(Instruction.Operator.move);
 						moveInstr.setArgX(argXR);
 						moveInstr.setArgZ(argZR);
@@ -344,8 +313,7 @@ public class RegisterAllocator {
 					}
 					if (argYR.equals(argZR) == false) {
 						BasicBlock rightParent = program.getRightParent(block);
-						int insertionIndex = rightParent.getIndexOfLastNonBranchInstruction();
-						Instruction moveInstr = rightParent.addInstruction(insertionIndex);
+						Instruction moveInstr = rightParent.addInstructionBefore(rightParent.getFirstTrailingBranch());
 						moveInstr.setOperator(Instruction.Operator.move);
 						moveInstr.setArgX(argYR);
 						moveInstr.setArgZ(argZR);
@@ -358,7 +326,7 @@ public class RegisterAllocator {
 					if (replacements.containsKey(argR)) {
 						instr.setArgZ(argR);
 					}else if (instr.getArgZ() == null) {
-						instr.setArgZ(new WhitespaceValue());
+						instr.setArgZ(program.getValues().whitespace());
 					}
 					
 					for (int j = 0; j < 3; j++) {
@@ -10,7 +10,7 @@ public class SSAAnalyzer {
 	}
 	
 	public DefUseTable getDefUseTable() {
-		DefUseTable table = new DefUseTable();
+		DefUseTable table = new DefUseTable(program);
 		
 		for (BasicBlock block : program.getBasicBlocks()) {
 			for (int i = 0; i < block.getInstructions().size(); i++) {
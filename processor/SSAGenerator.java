@@ -1,17 +1,26 @@
 package processor;
 
 import java.util.*;
+import java.util.concurrent.*;
 
 import model.syntax.*;
 import model.ssa.*;
 
+import jfr.*;
+
 public class SSAGenerator {
 	private SymbolTable symbolTable;
 	private Computation computation;
 	private Program program;
+	private ValuePool values;
 	
 	private HashMap<Instruction, Integer> functionCallPatches;
 	
+	// Operators are stored in the syntax arena by ordinal.
+	private static final Expression.Operator[] ExpressionOperators = Expression.Operator.values();
+	private static final Term.Operator[] TermOperators = Term.Operator.values();
+	private static final Relation.Operator[] RelationOperators = Relation.Operator.values();
+	
 	private static class Context {
 		int depth;
 		BasicBlock currentBlock;
@@ -19,8 +28,9 @@ public class SSAGenerator {
 		VariableVersionTable table;
 		FunctionDeclaration function;
 		HashSet<Integer> parameterIDs;
+		SyntaxArena arena;
 		
-		Context(int d, BasicBlock b, VariableVersionTable t, FunctionDeclaration f, HashSet<Integer> pids) {
+		Context(int d, BasicBlock b, VariableVersionTable t, FunctionDeclaration f, HashSet<Integer> pids, SyntaxArena a) {
 			depth = d;
 			currentBlock = b;
 			allBlocks = new ArrayList<>();
@@ -28,6 +38,7 @@ public class SSAGenerator {
 			table = t;
 			function = f;
 			parameterIDs = pids;
+			arena = a;
 		}
 	}
 	
@@ -35,44 +46,27 @@ public class SSAGenerator {
 		symbolTable = table;
 		computation = comp;
 		program = new Program();
+		values = program.getValues();
 		
 		functionCallPatches = new HashMap<>();
 	}
 	
 	public Program generate() {
-		{
-			BasicBlock startBlock = program.addBasicBlock(0);
-			Context mainCTX = new Context(0, startBlock, 
-					                      new VariableVersionTable(), 
-					                      null, new HashSet<>());
+		return generate(null, null);
+	}
 	
-			processStatements(mainCTX, computation.statements);
-			
-			BasicBlock endBlock = mainCTX.currentBlock;
-			
-			Instruction endInstr = endBlock.addInstruction();
-			endInstr.setOperator(Instruction.Operator.end);
-		}
-		
-		for (FunctionDeclaration function : computation.functions) {
-			BasicBlock startBlock = program.addBasicBlock(1);
-			Context funcCTX = new Context(1, startBlock,
-										  new VariableVersionTable(), 
-										  function, 
-										  new HashSet<>(function.parameterIDs));
-			
-			processStatements(funcCTX, function.statements);
-			
-			BasicBlock endBlock = funcCTX.currentBlock;
-			
-			if (endBlock.endsWithEndInstruction() == false) {
-				Instruction endInstr = endBlock.addInstruction();
-				endInstr.setOperator(Instruction.Operator.end);				
+	// With an executor, functions are generated into separate programs on its
+	// threads and appended in declaration order, numbered as if generated here.
+	// With a cache, functions the parser reused keep their earlier programs.
+	public Program generate(ExecutorService executor, FunctionCache cache) {
+		generateMain();
+		
+		if ((executor != null && computation.functions.size() > 1) || cache != null) {
+			generateFunctions(executor, cache);
+		}else{
+			for (FunctionDeclaration function : computation.functions) {
+				generateFunction(function);
 			}
-			
-			program.markFunctionStartBlock(startBlock, function.nameID);
-			
-			// TODO: handle functions better
 		}
 		
 		for (Map.Entry<Instruction, Integer> entry : functionCallPatches.entrySet()) {
@@ -82,43 +76,217 @@ public class SSAGenerator {
 			callInstr.setArgY(program.getFunctionStartBlock(funcID).getAddress());
 		}
 		
+		program.freeze();
+		
 		return program;
 	}
 	
-	private void processStatements(Context ctx, ArrayList<Statement> statements) {
-		for (Statement stmt : statements) {
-			if (stmt instanceof Assignment) {
-				Assignment assignment = (Assignment) stmt;
-				
-				processAssignment(ctx, assignment);
-				
-			}else if (stmt instanceof FunctionCall) {
-				FunctionCall functionCall = (FunctionCall) stmt;
-				
-				processFunctionCall(ctx, functionCall);
-				
-			}else if (stmt instanceof IfStatement) {
-				IfStatement ifStatement = (IfStatement) stmt;
-				
-				processIfStatement(ctx, ifStatement);
-				
-			}else if (stmt instanceof WhileStatement) {
-				WhileStatement whileStatement = (WhileStatement) stmt;
+	// Generates only main (for a null function) or one function, for compiling
+	// functions one at a time. Calls are not linked; getFunctionCalls tells
+	// which function each call instruction calls.
+	public Program generateRegion(FunctionDeclaration function) {
+		if (function == null) {
+			generateMain();
+		}else{
+			generateFunction(function);
+		}
+		
+		program.freeze();
+		
+		return program;
+	}
+	
+	public Map<Instruction, Integer> getFunctionCalls() {
+		return Collections.unmodifiableMap(functionCallPatches);
+	}
+	
+	private void generateMain() {
+		SSAGenerationEvent event = new SSAGenerationEvent();
+		event.begin();
+		int firstBlock = program.getBasicBlocks().size();
+		int firstInstr = program.getInstructionCount();
+		
+		BasicBlock startBlock = program.addBasicBlock(0);
+		Context mainCTX = new Context(0, startBlock, 
+				                      new VariableVersionTable(), 
+				                      null, new HashSet<>(),
+				                      computation.arena);
 				
-				processWhileStatement(ctx, whileStatement);
+		processStatements(mainCTX, computation.body);
+		
+		BasicBlock endBlock = mainCTX.currentBlock;
+		
+		Instruction endInstr = endBlock.addInstruction();
+		endInstr.setOperator(Instruction.Operator.end);
+		
+		commitEvent(event, "main", firstBlock, firstInstr);
+	}
+	
+	private void generateFunction(FunctionDeclaration function) {
+		SSAGenerationEvent event = new SSAGenerationEvent();
+		event.begin();
+		int firstBlock = program.getBasicBlocks().size();
+		int firstInstr = program.getInstructionCount();
+		
+		BasicBlock startBlock = program.addBasicBlock(1);
+		Context funcCTX = new Context(1, startBlock,
+									  new VariableVersionTable(), 
+									  function, 
+									  new HashSet<>(function.parameterIDs),
+									  function.arena);
+									
+		processStatements(funcCTX, function.body);
+		
+		BasicBlock endBlock = funcCTX.currentBlock;
+		
+		if (endBlock.endsWithEndInstruction() == false) {
+			Instruction endInstr = endBlock.addInstruction();
+			endInstr.setOperator(Instruction.Operator.end);				
+		}
+		
+		program.markFunctionStartBlock(startBlock, function.nameID);
+		
+		commitEvent(event, symbolTable.IDToName(function.nameID), firstBlock, firstInstr);
+	}
+	
+	private static class Fragment {
+		Program program;
+		int[] calls;
+	}
+	
+	private void generateFunctions(ExecutorService executor, FunctionCache cache) {
+		String unit = PassEvent.currentUnit();
+		ArrayList<Future<Fragment>> tasks = new ArrayList<>();
+		ArrayList<FunctionCache.Entry> entries = new ArrayList<>();
+		
+		for (FunctionDeclaration function : computation.functions) {
+			FunctionCache.Entry entry = null;
+			if (cache != null) {
+				entry = cache.lookup(function, symbolTable.IDToName(function.nameID));
+			}
+			entries.add(entry);
+			
+			if (entry != null && entry.ssa != null) {
+				Fragment fragment = new Fragment();
+				fragment.program = entry.ssa;
+				fragment.calls = entry.calls;
 				
-			}else if (stmt instanceof ReturnStatement) {
-				ReturnStatement returnStatement = (ReturnStatement) stmt;
+				tasks.add(CompletableFuture.completedFuture(fragment));
+				continue;
+			}
+			
+			Callable<Fragment> task = () -> {
+				PassEvent.enterUnit(unit);
+				try {
+					SSAGenerator generator = new SSAGenerator(symbolTable, computation);
+					generator.generateFunction(function);
+					
+					Fragment fragment = new Fragment();
+					fragment.program = generator.program;
+					fragment.calls = new int[generator.functionCallPatches.size() * 2];
+					
+					int i = 0;
+					for (Map.Entry<Instruction, Integer> patch : generator.functionCallPatches.entrySet()) {
+						fragment.calls[i++] = patch.getKey().getNumber();
+						fragment.calls[i++] = patch.getValue();
+					}
+					
+					return fragment;
+				} finally {
+					PassEvent.exitUnit();
+				}
+			};
+			
+			if (executor != null) {
+				tasks.add(executor.submit(task));
+			}else{
+				FutureTask<Fragment> inline = new FutureTask<>(task);
+				inline.run();
+				tasks.add(inline);
+			}
+		}
+		
+		for (int i = 0; i < tasks.size(); i++) {
+			Fragment fragment = join(tasks.get(i));
+			int offset = program.append(fragment.program);
+			
+			for (int j = 0; j < fragment.calls.length; j += 2) {
+				Instruction callInstr = program.getInstruction(fragment.calls[j] + offset);
 				
-				processReturnStatement(ctx, returnStatement);
+				functionCallPatches.put(callInstr, fragment.calls[j + 1]);
+			}
+			
+			FunctionCache.Entry entry = entries.get(i);
+			if (entry != null) {
+				entry.ssa = fragment.program;
+				entry.calls = fragment.calls;
+			}
+		}
+	}
+	
+	private static <T> T join(Future<T> task) {
+		boolean interrupted = false;
+		try {
+			while (true) {
+				try {
+					return task.get();
+				} catch (InterruptedException e) {
+					interrupted = true;
+				}
+			}
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof RuntimeException) {
+				throw (RuntimeException) e.getCause();
+			}
+			throw new IllegalStateException(e.getCause());
+		} finally {
+			if (interrupted) {
+				Thread.currentThread().interrupt();
 			}
 		}
 	}
 	
-	private void processAssignment(Context ctx, Assignment assignment) {
-		Designator desig = assignment.designator;
-		Expression expr = assignment.expression;
-		int id = desig.id;
+	private void commitEvent(SSAGenerationEvent event, String function, int firstBlock, int firstInstr) {
+		event.end();
+		if (event.shouldCommit()) {
+			event.unit = PassEvent.currentUnit();
+			event.function = function;
+			event.blocks = program.getBasicBlocks().size() - firstBlock;
+			event.instructions = program.getInstructionCount() - firstInstr;
+			event.commit();
+		}
+	}
+	
+	private void processStatements(Context ctx, int block) {
+		SyntaxArena arena = ctx.arena;
+		
+		for (int stmt = arena.getFirstChild(block); stmt != -1; stmt = arena.getNextSibling(stmt)) {
+			switch (arena.getKind(stmt)) {
+			case SyntaxArena.AssignmentNode:
+				processAssignment(ctx, stmt);
+				break;
+			case SyntaxArena.CallNode:
+				processFunctionCall(ctx, stmt);
+				break;
+			case SyntaxArena.IfNode:
+				processIfStatement(ctx, stmt);
+				break;
+			case SyntaxArena.WhileNode:
+				processWhileStatement(ctx, stmt);
+				break;
+			case SyntaxArena.ReturnNode:
+				processReturnStatement(ctx, stmt);
+				break;
+			default:
+				throw new IllegalStateException("Unknown Statement");
+			}
+		}
+	}
+	
+	private void processAssignment(Context ctx, int assignment) {
+		int desig = ctx.arena.getFirstChild(assignment);
+		int expr = ctx.arena.getNextSibling(desig);
+		int id = ctx.arena.getValue(desig);
 		String name = symbolTable.IDToName(id);
 		
 		Value exprValue = processExpression(ctx, expr);
@@ -127,7 +295,7 @@ public class SSAGenerator {
 			Instruction instr = ctx.currentBlock.addInstruction();
 			instr.setOperator(Instruction.Operator.move);
 			instr.setArgX(exprValue);
-			instr.setArgY(new VariableValue(name, id, instr.getNumber()));
+			instr.setArgY(values.variable(name, id, instr.getNumber()));
 			
 			ctx.table.getVersions().put(id, instr.getNumber());
 			
@@ -135,7 +303,7 @@ public class SSAGenerator {
 			Instruction instr = ctx.currentBlock.addInstruction();
 			instr.setOperator(Instruction.Operator.store);
 			instr.setArgX(exprValue);
-			instr.setArgY(new MemoryAddressValue(name, id));
+			instr.setArgY(values.memoryAddress(name, id));
 			
 			ctx.table.getVersions().put(id, instr.getNumber());
 			
@@ -144,7 +312,7 @@ public class SSAGenerator {
 			
 			Instruction addaInstr = ctx.currentBlock.addInstruction();
 			addaInstr.setOperator(Instruction.Operator.adda);
-			addaInstr.setArgX(new MemoryAddressValue(name, id));
+			addaInstr.setArgX(values.memoryAddress(name, id));
 			addaInstr.setArgY(offsetValue);
 			
 			Instruction storeInstr = ctx.currentBlock.addInstruction();
@@ -154,10 +322,11 @@ public class SSAGenerator {
 		}
 	}
 	
-	private Value processFunctionCall(Context ctx, FunctionCall functionCall) {
-		ArrayList<Value> parameterValues = processExpressions(ctx, functionCall.parameterExpressions);
+	private Value processFunctionCall(Context ctx, int functionCall) {
+		ArrayList<Value> parameterValues = processExpressions(ctx, functionCall);
 		
-		String name = symbolTable.IDToName(functionCall.functionID);
+		int functionID = ctx.arena.getValue(functionCall);
+		String name = symbolTable.IDToName(functionID);
 		
 		if ("OutputNewLine".equals(name)) {
 			Instruction instr = ctx.currentBlock.addInstruction();
@@ -184,27 +353,30 @@ public class SSAGenerator {
 			Instruction instr = ctx.currentBlock.addPlaceholderInstruction(() -> {
 				// TODO: Actually call function
 			});
-			instr.setArgX(new ArgumentsValue(parameterValues));
-			if (symbolTable.isFunction(functionCall.functionID)) {
+			instr.setArgX(values.arguments(parameterValues));
+			if (symbolTable.isFunction(functionID)) {
 				instr.setArgZ(instr.getResult());
 			}
 			
-			functionCallPatches.put(instr, functionCall.functionID);
+			functionCallPatches.put(instr, functionID);
 			
 			return instr.getResult();
 		}
 	}
 	
-	private void processIfStatement(Context ctx, IfStatement ifStatement) {
+	private void processIfStatement(Context ctx, int ifStatement) {
+		int relation = ctx.arena.getFirstChild(ifStatement);
+		int thenStatements = ctx.arena.getNextSibling(relation);
+		int elseStatements = ctx.arena.getNextSibling(thenStatements);
+		
 		// Top Block:
 		BasicBlock topBlock = ctx.currentBlock;
 		topBlock.setIfTopBlock(true);
 		
-		Relation relation = ifStatement.relation;
 		Value relationValue = processRelation(ctx, relation);
 		
 		Instruction condBranchInstr = topBlock.addInstruction();
-		condBranchInstr.setOperator(relationOperatorToInverseSSA(relation.op));
+		condBranchInstr.setOperator(relationOperatorToInverseSSA(relationOperator(ctx, relation)));
 		condBranchInstr.setArgX(relationValue);
 		
 		// If Block:
@@ -212,9 +384,10 @@ public class SSAGenerator {
 		Context ifCTX = new Context(ctx.depth, ifStartBlock,
 								   ctx.table.clone(), 
 								   ctx.function,
-								   ctx.parameterIDs);
+								   ctx.parameterIDs,
+								   ctx.arena);
 		
-		processStatements(ifCTX, ifStatement.thenStatements);
+		processStatements(ifCTX, thenStatements);
 		
 		BasicBlock ifEndBlock = ifCTX.currentBlock;
 		
@@ -226,9 +399,10 @@ public class SSAGenerator {
 		Context elseCTX = new Context(ctx.depth, elseStartBlock, 
 									 ctx.table.clone(), 
 									 ctx.function,
-									 ctx.parameterIDs);
+									 ctx.parameterIDs,
+									 ctx.arena);
 		
-		processStatements(elseCTX, ifStatement.elseStatements);
+		processStatements(elseCTX, elseStatements);
 		
 		BasicBlock elseEndBlock = elseCTX.currentBlock;
 		
@@ -257,7 +431,10 @@ public class SSAGenerator {
 		program.addDominatior(topBlock, followBlock);
 	}
 	
-	private void processWhileStatement(Context ctx, WhileStatement whileStatement) {
+	private void processWhileStatement(Context ctx, int whileStatement) {
+		int relation = ctx.arena.getFirstChild(whileStatement);
+		int statements = ctx.arena.getNextSibling(relation);
+		
 		// Start Block:
 		BasicBlock startBlock = ctx.currentBlock;
 		VariableVersionTable startValueTable = ctx.table.clone(); // Backup for patch
@@ -268,11 +445,10 @@ public class SSAGenerator {
 		ctx.allBlocks.add(topBlock);
 		ctx.currentBlock = topBlock;
 		
-		Relation relation = whileStatement.relation;
 		Value relationValue = processRelation(ctx, relation);
 		
 		Instruction condBranchInstr = topBlock.addInstruction();
-		condBranchInstr.setOperator(relationOperatorToInverseSSA(relation.op));
+		condBranchInstr.setOperator(relationOperatorToInverseSSA(relationOperator(ctx, relation)));
 		condBranchInstr.setArgX(relationValue);
 		
 		// While Block:
@@ -280,9 +456,10 @@ public class SSAGenerator {
 		Context whileCTX = new Context(ctx.depth, whileStartBlock,
 									  ctx.table.clone(),
 									  ctx.function,
-									  ctx.parameterIDs);
+									  ctx.parameterIDs,
+									  ctx.arena);
 		
-		processStatements(whileCTX, whileStatement.statements);
+		processStatements(whileCTX, statements);
 		
 		BasicBlock whileEndBlock = whileCTX.currentBlock;
 		
@@ -314,14 +491,14 @@ public class SSAGenerator {
 		program.addDominatior(topBlock, followBlock);
 	}
 	
-	private void processReturnStatement(Context ctx, ReturnStatement returnStatement) {
-		Expression returnExpr = returnStatement.expression;
-		Value returnValue = (returnExpr != null) ? processExpression(ctx, returnExpr) : null;
+	private void processReturnStatement(Context ctx, int returnStatement) {
+		int returnExpr = ctx.arena.getFirstChild(returnStatement);
+		Value returnValue = (returnExpr != -1) ? processExpression(ctx, returnExpr) : null;
 		
 		Instruction endInstr = ctx.currentBlock.addInstruction();
 		endInstr.setOperator(Instruction.Operator.end);
 		endInstr.setArgX(returnValue);
-		endInstr.setArgY(new MemoryAddressValue("_r", ctx.function.nameID));
+		endInstr.setArgY(values.memoryAddress("_r", ctx.function.nameID));
 		
 		// TODO: Hello!
 		
@@ -330,26 +507,24 @@ public class SSAGenerator {
 	
 	private void processMerge(Context ctx, VariableVersionTable left, VariableVersionTable right) {
 		HashSet<Integer> conflictIDs = VariableVersionTable.getConflictingIDs(left, right);
+		Instruction firstInstr = ctx.currentBlock.getFirstInstruction();
 		
-		int phiCount = 0;
 		for (int id : conflictIDs) {
 			String name = symbolTable.IDToName(id);
 			
 			int leftVersion = left.getVersions().getOrDefault(id, -1);
 			int rightVersion = right.getVersions().getOrDefault(id, -1);
 			
-			Instruction phiInstr = ctx.currentBlock.addInstruction(phiCount++);
+			Instruction phiInstr = ctx.currentBlock.addInstructionBefore(firstInstr);
 			phiInstr.setOperator(Instruction.Operator.phi);
-			phiInstr.setArgX(new VariableValue(name, id, leftVersion));
-			phiInstr.setArgY(new VariableValue(name, id, rightVersion));
-			phiInstr.setArgZ(new VariableValue(name, id, phiInstr.getNumber()));
+			phiInstr.setArgX(values.variable(name, id, leftVersion));
+			phiInstr.setArgY(values.variable(name, id, rightVersion));
+			phiInstr.setArgZ(values.variable(name, id, phiInstr.getNumber()));
 			
 			ctx.table.getVersions().put(id, phiInstr.getNumber());
 		}
 		
-		for (int i = phiCount; i < ctx.currentBlock.getInstructions().size(); i++) {
-			Instruction instr = ctx.currentBlock.getInstructions().get(i);
-			
+		for (Instruction instr = firstInstr; instr != null; instr = instr.getNext()) {
 			for (int j = 0; j < 3; j++) {
 				Value argV = instr.getArg(j);
 				
@@ -360,7 +535,7 @@ public class SSAGenerator {
 					
 					if (!conflictIDs.contains(id)) continue;
 					
-					varV.setVersion(ctx.table.getVersions().get(id));
+					instr.setArg(j, values.variable(varV.getName(), id, ctx.table.getVersions().get(id)));
 				}
 			}
 		}
@@ -380,39 +555,46 @@ public class SSAGenerator {
 						if (oldTable.getVersions().containsKey(id) == false) continue;
 						if (oldTable.getVersions().get(id) != varV.getVersion()) continue;
 						
-						varV.setVersion(newTable.getVersions().get(id));
+						instr.setArg(i, values.variable(varV.getName(), id, newTable.getVersions().get(id)));
 					}
 				}
 			}
 		}
 	}
 	
-	private Value processRelation(Context ctx, Relation relation) {
-		Value lhsValue = processExpression(ctx, relation.lhs);
-		Value rhsValue = processExpression(ctx, relation.rhs);
+	private Value processRelation(Context ctx, int relation) {
+		int lhs = ctx.arena.getFirstChild(relation);
+		int rhs = ctx.arena.getNextSibling(lhs);
+		
+		Value lhsValue = processExpression(ctx, lhs);
+		Value rhsValue = processExpression(ctx, rhs);
 		
 		Value result = compare(ctx, lhsValue, rhsValue);
 		
 		return result;
 	}
 	
-	private ArrayList<Value> processExpressions(Context ctx, ArrayList<Expression> expressions) {
-		ArrayList<Value> expressionValues = new ArrayList<Value>(expressions.size());
+	// Evaluates the expressions under node: call arguments or array indices.
+	private ArrayList<Value> processExpressions(Context ctx, int node) {
+		SyntaxArena arena = ctx.arena;
+		ArrayList<Value> expressionValues = new ArrayList<Value>(arena.getChildCount(node));
 		
-		for (int i = 0; i < expressions.size(); i++) {
-			expressionValues.add(processExpression(ctx, expressions.get(i)));
+		for (int expr = arena.getFirstChild(node); expr != -1; expr = arena.getNextSibling(expr)) {
+			expressionValues.add(processExpression(ctx, expr));
 		}
 		
 		return expressionValues;
 	}
 	
-	private Value processExpression(Context ctx, Expression expression) {
-		Value result = processTerm(ctx, expression.terms.get(0));
+	private Value processExpression(Context ctx, int expression) {
+		SyntaxArena arena = ctx.arena;
+		int term = arena.getFirstChild(expression);
+		Value result = processTerm(ctx, term);
 		
-		for (int i = 1; i < expression.terms.size(); i++) {
-			Value termValue = processTerm(ctx, expression.terms.get(i));
+		for (term = arena.getNextSibling(term); term != -1; term = arena.getNextSibling(term)) {
+			Value termValue = processTerm(ctx, term);
 			
-			Expression.Operator exprOp = expression.operators.get(i - 1);
+			Expression.Operator exprOp = ExpressionOperators[arena.getOp(term)];
 			Instruction.Operator instrOp = expressionOperatorToSSA(exprOp);
 			
 			result = compute(ctx, instrOp, result, termValue);	
@@ -421,13 +603,15 @@ public class SSAGenerator {
 		return result;
 	}
 	
-	private Value processTerm(Context ctx, Term term) {
-		Value result = processFactor(ctx, term.factors.get(0));
+	private Value processTerm(Context ctx, int term) {
+		SyntaxArena arena = ctx.arena;
+		int factor = arena.getFirstChild(term);
+		Value result = processFactor(ctx, factor);
 		
-		for (int i = 1; i < term.factors.size(); i++) {
-			Value factorValue = processFactor(ctx, term.factors.get(i));
+		for (factor = arena.getNextSibling(factor); factor != -1; factor = arena.getNextSibling(factor)) {
+			Value factorValue = processFactor(ctx, factor);
 			
-			Term.Operator exprOp = term.operators.get(i - 1);
+			Term.Operator exprOp = TermOperators[arena.getOp(factor)];
 			Instruction.Operator instrOp = termOperatorToSSA(exprOp);
 			
 			result = compute(ctx, instrOp, result, factorValue);
@@ -436,30 +620,30 @@ public class SSAGenerator {
 		return result;
 	}
 	
-	private Value processFactor(Context ctx, Factor factor) {
-		if (factor instanceof Designator) {
-			Designator desig = (Designator)(factor);
-			int id = desig.id;
+	private Value processFactor(Context ctx, int factor) {
+		switch (ctx.arena.getKind(factor)) {
+		case SyntaxArena.DesignatorNode:
+			int id = ctx.arena.getValue(factor);
 			String name = symbolTable.IDToName(id);
 			
 			if (canTreatAsLocalVariable(ctx, id)) {
 				int version = ctx.table.getVersions().getOrDefault(id, -1);
 				
-				return new VariableValue(name, id, version);
+				return values.variable(name, id, version);
 				
 			}else if (symbolTable.isVariable(id)) {
 				Instruction instr = ctx.currentBlock.addInstruction();
 				instr.setOperator(Instruction.Operator.load);
-				instr.setArgY(new MemoryAddressValue(name, id));
+				instr.setArgY(values.memoryAddress(name, id));
 				
 				return instr.getResult();
 				
 			}else{
-				Value offsetValue = computeOffset(ctx, desig);
+				Value offsetValue = computeOffset(ctx, factor);
 				
 				Instruction addaInstr = ctx.currentBlock.addInstruction();
 				addaInstr.setOperator(Instruction.Operator.adda);
-				addaInstr.setArgX(new MemoryAddressValue(name, id));
+				addaInstr.setArgX(values.memoryAddress(name, id));
 				addaInstr.setArgY(offsetValue);
 				
 				Instruction loadInstr = ctx.currentBlock.addInstruction();
@@ -469,21 +653,16 @@ public class SSAGenerator {
 				return loadInstr.getResult();
 			}
 			
-		}else if (factor instanceof Constant) {
-			Constant c = (Constant)(factor);
-			
-			return new ConstantValue(c.value);
+		case SyntaxArena.ConstantNode:
+			return values.constant(ctx.arena.getValue(factor));
 			
-		}else if (factor instanceof Expression) {
-			Expression expr = (Expression)(factor);
+		case SyntaxArena.ExpressionNode:
+			return processExpression(ctx, factor);
 			
-			return processExpression(ctx, expr);
+		case SyntaxArena.CallNode:
+			return processFunctionCall(ctx, factor);
 			
-		}else if (factor instanceof FunctionCall) {
-			FunctionCall call = (FunctionCall)(factor);
-			
-			return processFunctionCall(ctx, call);
-		}else{
+		default:
 			throw new IllegalStateException("Unknown Factor");
 		}
 	}
@@ -504,7 +683,7 @@ public class SSAGenerator {
 				rc = 0;
 			}
 			
-			return new ConstantValue(rc);
+			return values.constant(rc);
 			
 		}else{
 			Instruction cmpInstr = ctx.currentBlock.addInstruction();
@@ -515,19 +694,20 @@ public class SSAGenerator {
 			return cmpInstr.getResult();
 		}
 	}
-	private Value computeOffset(Context ctx, Designator designator) {
+	private Value computeOffset(Context ctx, int designator) {
 		Value offsetValue;
+		int id = ctx.arena.getValue(designator);
 		
-		if (symbolTable.isVariable(designator.id)) {
-			offsetValue = new ConstantValue(0);
+		if (symbolTable.isVariable(id)) {
+			offsetValue = values.constant(0);
 			
 		}else{
-			int[] dimensions = symbolTable.getArrayDimensions(designator.id);
-			ArrayList<Value> indexValues = processExpressions(ctx, designator.indexExpressions);
+			int[] dimensions = symbolTable.getArrayDimensions(id);
+			ArrayList<Value> indexValues = processExpressions(ctx, designator);
 			offsetValue = indexValues.get(indexValues.size() - 1);
 			
 			for (int i = indexValues.size() - 2; i >= 0; i--) {
-				ConstantValue indexFactor = new ConstantValue(factorForDimension(dimensions, i));
+				ConstantValue indexFactor = values.constant(factorForDimension(dimensions, i));
 				Value term = compute(ctx, Instruction.Operator.mul, indexValues.get(i), indexFactor);
 				
 				offsetValue = compute(ctx, Instruction.Operator.add, offsetValue, term);
@@ -565,7 +745,7 @@ public class SSAGenerator {
 			default:
 				throw new IllegalStateException("Unknown computation operator");
 			}
-			return new ConstantValue(rc);
+			return values.constant(rc);
 			
 		}else if (constX || constY) {
 			ConstantValue a = (ConstantValue)((constX) ? x : y);
@@ -593,7 +773,7 @@ public class SSAGenerator {
 				}
 			case mul:
 				if (a.getValue() == 0) {
-					return new ConstantValue(0);
+					return values.constant(0);
 				}else if (a.getValue() == 1) {
 					return b;
 				}else{
@@ -631,6 +811,10 @@ public class SSAGenerator {
 	
 	// model.syntax to model.ssa conversion helper functions:
 	
+	private static Relation.Operator relationOperator(Context ctx, int relation) {
+		return RelationOperators[ctx.arena.getOp(relation)];
+	}
+	
 	private static Instruction.Operator expressionOperatorToSSA(Expression.Operator op) {
 		switch (op) {
 		case Plus:
@@ -4,32 +4,35 @@ import java.util.*;
 
 import model.ssa.*;
 
+import jfr.*;
+
 public class SSAOptimizer {
 	private Program program;
 	private DefUseTable defUseTable;
 	
-	private StringBuilder eliminationProtocol;
+	private TraceSink eliminationProtocol;
 	
-	public SSAOptimizer(Program pgm, DefUseTable t, StringBuilder protocol) {
+	public SSAOptimizer(Program pgm, DefUseTable t, TraceSink protocol) {
 		program = pgm;
 		defUseTable = t;
 		eliminationProtocol = protocol;
 	}
 	
 	// Copy propagation:
-	public void removeMoveInstructions() {
-		HashMap<Value, Value> replacements = new HashMap<>();
+	public boolean removeMoveInstructions() {
+		CopyPropagationEvent event = new CopyPropagationEvent();
+		event.begin();
+		int instrCount = program.getInstructionCount();
+		
+		LinkedHashMap<Value, Value> replacements = new LinkedHashMap<>();
 		
 		for (BasicBlock block : program.getBasicBlocks()) {
-			for (int i = 0; i < block.getInstructions().size(); i++) {
-				Instruction instr = block.getInstructions().get(i);
-				
+			for (Instruction instr = block.getFirstInstruction(); instr != null; instr = instr.getNext()) {
 				if (instr.getOperator() != Instruction.Operator.move) {
 					continue;
 				}
 				
 				block.eliminateInstruction(instr);
-				i--;
 				
 				Value oldValue = instr.getArgY();
 				Value newValue = instr.getArgX();
@@ -42,72 +45,61 @@ public class SSAOptimizer {
 				defUseTable.removeDefinition(instr.getNumber());
 				defUseTable.removeUses(instr.getNumber());
 
-				eliminationProtocol.append(String.format(" CP: (%03d) is a move instruction, replace: %s with: %s\n", 
-													    instr.getNumber(),
-														instr.getArgY(),
-														instr.getArgX()));	
+				if (eliminationProtocol.isEnabled()) {
+					eliminationProtocol.trace(" CP: (%03d) is a move instruction, replace: %s with: %s\n", 
+											    instr.getNumber(),
+												instr.getArgY(),
+												instr.getArgX());
+				}
 			}
 		}
 		
+		for (Map.Entry<Value, Value> replacement : replacements.entrySet()) {
+			defUseTable.replaceAllUses(replacement.getKey(), replacement.getValue());
+		}
+		
+		// Folding may turn arguments of earlier instructions into constants.
 		for (int t = 0; t < 2; t++) {
 			for (BasicBlock block : program.getBasicBlocks()) {
-				for (int i = 0; i < block.getInstructions().size(); i++) {
-					Instruction instr = block.getInstructions().get(i);
-					for (int j = 0; j < 3; j++) {
-						Value argV = instr.getArg(j);
-						
-						if (argV == null) continue;
-						if (argV instanceof ArgumentsValue) {
-							ArgumentsValue argsV = (ArgumentsValue) argV;
-							
-							for (Value av : argsV.getArguments()) {
-								Value ar = replacements.getOrDefault(av, null);
-								
-								if (ar == null) continue;
-								
-								defUseTable.removeUse(av, instr.getNumber());
-								defUseTable.addUse(ar, instr.getNumber());
-							}
-							
-							argsV.replace(replacements);
-						}
-						if (replacements.containsKey(argV) == false) continue;
-						
-						Value repV = replacements.get(argV);
-						
-						instr.setArg(j, repV);
-						
-						defUseTable.removeUse(argV, instr.getNumber());
-						defUseTable.addUse(repV, instr.getNumber());
-					}
-					
+				for (Instruction instr = block.getFirstInstruction(); instr != null; instr = instr.getNext()) {
 					ConstantValue repC = instr.getConstantValue();
 					
 					if (repC == null) continue;
 					
 					block.eliminateInstruction(instr);
-					i--;
-					
-					replacements.put(instr.getResult(), repC);
 					
 					defUseTable.removeDefinition(instr.getNumber());
 					defUseTable.removeUses(instr.getNumber());
+					defUseTable.replaceAllUses(instr.getResult(), repC);
 					
-					eliminationProtocol.append(String.format(" CP: (%03d) is now constant, replace %s with %s\n", 
-														    instr.getNumber(),
-															instr.getResult(),
-															repC));
+					if (eliminationProtocol.isEnabled()) {
+						eliminationProtocol.trace(" CP: (%03d) is now constant, replace %s with %s\n", 
+												    instr.getNumber(),
+													instr.getResult(),
+													repC);
+					}
 				}
 			}
 		}
+		
+		event.end();
+		if (event.shouldCommit()) {
+			event.unit = PassEvent.currentUnit();
+			event.instructionsBefore = instrCount;
+			event.eliminated = instrCount - program.getInstructionCount();
+			event.commit();
+		}
+		
+		return program.getInstructionCount() < instrCount;
 	}
 	
-	public void removeUnusedInstructions() {
+	public boolean removeUnusedInstructions() {
+		int instrCount = program.getInstructionCount();
+		
 		for (int i = program.getBasicBlocks().size() - 1; i >= 0; i--) {
 			BasicBlock block = program.getBasicBlocks().get(i);
 			
-			for (int j = block.getInstructions().size() - 1; j >= 0; j--) {
-				Instruction instr = block.getInstructions().get(j);
+			for (Instruction instr = block.getLastInstruction(); instr != null; instr = instr.getPrevious()) {
 				Value defValue = defUseTable.getDefinedValue(instr.getNumber());
 				
 				if (defValue == null) continue;
@@ -119,32 +111,42 @@ public class SSAOptimizer {
 					defUseTable.removeDefinition(instr.getNumber());
 					defUseTable.removeUses(instr.getNumber());
 					
-					eliminationProtocol.append(String.format("USE: (%03d) is never used\n", 
-														    instr.getNumber(), defValue));
+					if (eliminationProtocol.isEnabled()) {
+						eliminationProtocol.trace("USE: (%03d) is never used\n", 
+												    instr.getNumber(), defValue);
+					}
 					
-					instr = (j > 0) ? block.getInstructions().get(j - 1) : null;
-					if (j > 0 && instr.getOperator() == Instruction.Operator.adda) {
-						block.eliminateInstruction(instr);
-						j--;
+					Instruction addaInstr = instr.getPrevious();
+					if (addaInstr != null && addaInstr.getOperator() == Instruction.Operator.adda) {
+						block.eliminateInstruction(addaInstr);
+						instr = addaInstr;
 						
-						defUseTable.removeDefinition(instr.getNumber());
-						defUseTable.removeUses(instr.getNumber());
+						defUseTable.removeDefinition(addaInstr.getNumber());
+						defUseTable.removeUses(addaInstr.getNumber());
 						
-						eliminationProtocol.append(String.format("USE: (%03d) is orphaned adda\n", 
-															    instr.getNumber()));	
+						if (eliminationProtocol.isEnabled()) {
+							eliminationProtocol.trace("USE: (%03d) is orphaned adda\n", 
+													    addaInstr.getNumber());
+						}
 						
 					}
 				}
 			}
 		}
+		
+		return program.getInstructionCount() < instrCount;
 	}
 	
-	public void removeCommonSubexpressions() {
-		HashMap<Value, Value> replacements = new HashMap<>();
+	public boolean removeCommonSubexpressions(DominatorTree dominatorTree) {
+		CommonSubexpressionEvent event = new CommonSubexpressionEvent();
+		event.begin();
+		int instrCount = program.getInstructionCount();
+		
+		LinkedHashMap<Value, Value> replacements = new LinkedHashMap<>();
 		HashMap<Integer, SubexpressionTable> tables = new HashMap<>();
 		
 		for (BasicBlock block : program.getBasicBlocks()) {
-			BasicBlock dominator = program.getDirectDominator(block);
+			BasicBlock dominator = dominatorTree.getDirectDominator(block);
 			SubexpressionTable table;
 			
 			if (dominator == null) {
@@ -159,8 +161,7 @@ public class SSAOptimizer {
 				table.killLoadInstructions();
 			}
 			
-			for (int i = 0; i < block.getInstructions().size(); i++) {
-				Instruction currInstr = block.getInstructions().get(i);
+			for (Instruction currInstr = block.getFirstInstruction(); currInstr != null; currInstr = currInstr.getNext()) {
 				Instruction prevInstr = table.getPreviousInstruction(currInstr);
 				
 				if (prevInstr == null) {
@@ -175,55 +176,48 @@ public class SSAOptimizer {
 					replacements.put(oldResult, newResult);
 					
 					block.eliminateInstruction(currInstr);
-					i--;
 					
 					defUseTable.removeDefinition(currInstr.getNumber());
 					defUseTable.removeUses(currInstr.getNumber());
 					
-					eliminationProtocol.append(String.format("CSE: (%03d) repeats (%03d), replace: %s with: %s\n", 
-														    currInstr.getNumber(),
-														    prevInstr.getNumber(),
-														    oldResult,
-														    newResult));	
+					if (eliminationProtocol.isEnabled()) {
+						eliminationProtocol.trace("CSE: (%03d) repeats (%03d), replace: %s with: %s\n", 
+												    currInstr.getNumber(),
+												    prevInstr.getNumber(),
+												    oldResult,
+												    newResult);
+					}
 					
-					currInstr = (i >= 0) ? block.getInstructions().get(i) : null;
-					if (i >= 0 && currInstr.getOperator() == Instruction.Operator.adda) {
-						block.eliminateInstruction(currInstr);
-						i--;
+					Instruction addaInstr = currInstr.getPrevious();
+					if (addaInstr != null && addaInstr.getOperator() == Instruction.Operator.adda) {
+						block.eliminateInstruction(addaInstr);
 						
-						defUseTable.removeDefinition(currInstr.getNumber());
-						defUseTable.removeUses(currInstr.getNumber());
+						defUseTable.removeDefinition(addaInstr.getNumber());
+						defUseTable.removeUses(addaInstr.getNumber());
 						
-						eliminationProtocol.append(String.format("CSE: (%03d) is orphaned adda\n", 
-															    currInstr.getNumber()));	
+						if (eliminationProtocol.isEnabled()) {
+							eliminationProtocol.trace("CSE: (%03d) is orphaned adda\n", 
+													    addaInstr.getNumber());
+						}
 						
 					}
 				}
 			}
 		}
 		
-
-		for (BasicBlock block : program.getBasicBlocks()) {
-			for (Instruction instr : block.getInstructions()) {
-				for (int j = 0; j < 3; j++) {
-					Value argV = instr.getArg(j);
-					
-					if (argV == null) continue;
-					if (argV instanceof ArgumentsValue) {
-						ArgumentsValue argsV = (ArgumentsValue) argV;
-						argsV.replace(replacements);
-					}
-					if (replacements.containsKey(argV) == false) continue;
-					
-					Value repV = replacements.get(argV);
-					
-					instr.setArg(j, repV);
-					
-					defUseTable.removeUse(argV, instr.getNumber());
-					defUseTable.addUse(repV, instr.getNumber());
-				}
-			}
+		for (Map.Entry<Value, Value> replacement : replacements.entrySet()) {
+			defUseTable.replaceAllUses(replacement.getKey(), replacement.getValue());
+		}
+		
+		event.end();
+		if (event.shouldCommit()) {
+			event.unit = PassEvent.currentUnit();
+			event.instructionsBefore = instrCount;
+			event.eliminated = instrCount - program.getInstructionCount();
+			event.commit();
 		}
+		
+		return program.getInstructionCount() < instrCount;
 	}
 	
 }
@@ -1,5 +1,7 @@
 package processor;
 
+import java.util.*;
+
 public class Scanner {
 	public Reader reader;
 	public SymbolTable table;
@@ -8,31 +10,125 @@ public class Scanner {
 	public int val;
 	public String name;
 	
+	private NamePool names;
+	private TokenBuffer tokens;
+	private int index;
+	
+	// Lexer state while the token buffer is being filled.
+	private char[] nameBuffer;
+	private int start;
+	private boolean atEnd;
+	
 	public Scanner(String fileName) {
-		reader = new Reader(fileName);
-		table = new SymbolTable();
+		this(new Reader(fileName));
+	}
+	
+	// The whole input is tokenized up front; Next() then only steps through
+	// the packed buffer. Identifiers are interned, so each distinct name is
+	// allocated once.
+	public Scanner(Reader r) {
+		this(r, new NamePool());
+	}
+	
+	public Scanner(Reader r, NamePool n) {
+		reader = r;
+		names = n;
+		table = new SymbolTable(names);
+		tokens = new TokenBuffer();
+		
+		tokenize();
+		
+		index = -1;
+		Next();
+	}
+	
+	// A second cursor over the tokens of source that declares its symbols
+	// in t; the cursors can be used on different threads.
+	public Scanner(Scanner source, SymbolTable t) {
+		reader = source.reader;
+		table = t;
+		names = source.names;
+		tokens = source.tokens;
+		
+		index = source.index;
+		sym = source.sym;
+		val = source.val;
+		name = source.name;
+	}
+	
+	private void tokenize() {
+		nameBuffer = new char[32];
+		atEnd = false;
+		
+		while (atEnd == false) {
+			try {
+				scan();
+			} catch (CompilationException e) {
+				tokens.setError(e);
+				break;
+			}
+			
+			int value = (sym == Sym.number || sym == Sym.ident) ? val : 0;
+			tokens.add(sym, value, start, reader.getPosition());
+		}
 		
+		nameBuffer = null;
+	}
+	
+	public TokenBuffer getTokens() {
+		return tokens;
+	}
+	
+	public NamePool getNames() {
+		return names;
+	}
+	
+	public int getIndex() {
+		return index;
+	}
+	
+	public void seek(int i) {
+		index = i - 1;
 		Next();
 	}
 	
 	public void Next() {
+		if (index + 1 < tokens.size()) {
+			index++;
+		}else if (tokens.getError() != null) {
+			throw tokens.getError();
+		}
+		
+		sym = tokens.getKind(index);
+		
+		if (sym == Sym.number) {
+			val = tokens.getValue(index);
+		}else if (sym == Sym.ident) {
+			name = names.getName(tokens.getValue(index));
+		}
+	}
+	
+	private void scan() {
 		while (IsWhitespace(reader.sym)) {
 			reader.Next();
 		}
+		start = reader.getPosition();
 		
 		switch (reader.sym) {
 			case 0x00:
 			case 0xff:
 				sym = reader.sym;
+				atEnd = true;
 				return;
 			case '#':
 				while (true) {
 					if (reader.sym == 0xff) {
 						sym = Sym.eofToken;
+						atEnd = true;
 						return;
 					}else if (reader.sym == '\n') {
 						reader.Next();
-						Next();
+						scan();
 						return;
 					}
 					reader.Next();
@@ -52,10 +148,11 @@ public class Scanner {
 					while (true) {
 						if (reader.sym == 0xff) {
 							sym = Sym.eofToken;
+							atEnd = true;
 							return;
 						}else if (reader.sym == '\n') {
 							reader.Next();
-							Next();
+							scan();
 							return;
 						}
 						reader.Next();
@@ -68,7 +165,7 @@ public class Scanner {
 							reader.Next();
 							if (reader.sym == '/') {
 								reader.Next();
-								Next();
+								scan();
 								return;
 							}
 						}
@@ -154,19 +251,18 @@ public class Scanner {
 					return;
 					
 				}else if (IsLetter(reader.sym)) {
-					StringBuilder builder = new StringBuilder();
-					builder.append(reader.sym);
-					reader.Next();
+					int length = 0;
 					while (IsLetter(reader.sym) || IsDigit(reader.sym)) {
-						builder.append(reader.sym);
+						if (length == nameBuffer.length) {
+							nameBuffer = Arrays.copyOf(nameBuffer, length * 2);
+						}
+						nameBuffer[length++] = reader.sym;
 						reader.Next();
 					}
-					String s = builder.toString();
-					if (table.isKeyword(s)) {
-						sym = table.keywordToID(s);
-					}else{
+					sym = Keywords.lookup(nameBuffer, length);
+					if (sym < 0) {
 						sym = Sym.ident;
-						name = s;
+						val = names.intern(nameBuffer, length);
 					}
 				}else{
 					reader.Error("Unexpected symbol");
@@ -189,7 +285,7 @@ public class Scanner {
 	}
 	
 	public void Error(String errorMsg) {
-		reader.Error(errorMsg);
+		reader.Error(errorMsg, tokens.getEnd(index));
 	}
 	
 }
@@ -62,7 +62,7 @@ public class SubexpressionTable {
 				Value currOffset = null;
 				if (currY instanceof MemoryAddressValue) {
 					currMemAddrValue = (MemoryAddressValue) currInstr.getArgY();
-					currOffset = new ConstantValue(0);
+					currOffset = program.getValues().constant(0);
 					
 				}else if (currY instanceof ComputedValue) {
 					ComputedValue currCompY = (ComputedValue) currY;
@@ -81,7 +81,7 @@ public class SubexpressionTable {
 				Value prevOffset = null;
 				if (prevY instanceof MemoryAddressValue) {
 					prevMemAddrValue = (MemoryAddressValue) prevInstr.getArgY();
-					prevOffset = new ConstantValue(0);
+					prevOffset = program.getValues().constant(0);
 					
 				}else if (currY instanceof ComputedValue) {
 					ComputedValue prevCompY = (ComputedValue) prevY;
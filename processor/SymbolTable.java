@@ -1,15 +1,19 @@
 package processor;
 import java.util.*;
 
+// Symbols are stored column-wise in arrays indexed by their ID. Names are
+// interned in a NamePool; nounBindings and verbBindings map a name index to
+// the innermost symbol declaring it, and every symbol remembers the one it
+// shadows, so popping a frame just unwinds the symbols it declared.
+//
+// A table created with SymbolTable(parent, ...) is an overlay used to parse
+// one function body on its own thread: it reads the parent's global symbols
+// and only stores the symbols it declares itself, starting at firstID.
 public class SymbolTable {
 	public class Scope {
-		private HashMap<String, Integer> nounNames; // variables, arrays
-		private HashMap<String, Integer> verbNames; // procedures, functions
 		private int depth;
 		
 		private Scope(int d) {
-			nounNames = new HashMap<>();
-			verbNames = new HashMap<>();
 			depth = d;
 		}
 		
@@ -17,26 +21,40 @@ public class SymbolTable {
 			return depth;
 		}
 		
+		private int lookup(boolean verb, String name) {
+			int n = names.find(name);
+			if (n < 0) {
+				return -1;
+			}
+			
+			int id = resolve(verb, n);
+			while (id >= 0 && depthOf(id) > depth) {
+				id = shadowedOf(id);
+			}
+			
+			return (id >= 0 && depthOf(id) == depth) ? id : -1;
+		}
+		
 		public boolean hasNounName(String name) {
-			return nounNames.containsKey(name);
+			return lookup(false, name) >= 0;
 		}
 		
 		public int nounNameToID(String s) {
-			return nounNames.get(s);
+			return lookup(false, s);
 		}
 		
 		public boolean hasVerbName(String name) {
-			return verbNames.containsKey(name);
+			return lookup(true, name) >= 0;
 		}
 		
 		public int verbNameToID(String s) {
-			return verbNames.get(s);
+			return lookup(true, s);
 		}
 		
 		public int addProcedure(String name, int parameterCount) {
 			int id = otherIDs++;
 			
-			addEntry(id, name, Sym.ProcedurePrefix, parameterCount, null);
+			addEntry(id, name, Procedure, parameterCount, null);
 			
 			return id;
 		}
@@ -44,7 +62,7 @@ public class SymbolTable {
 		public int addFunction(String name, int parameterCount) {
 			int id = otherIDs++;
 			
-			addEntry(id, name, Sym.FunctionPrefix, parameterCount, null);
+			addEntry(id, name, Function, parameterCount, null);
 			
 			return id;
 		}
@@ -52,7 +70,7 @@ public class SymbolTable {
 		public int addVariable(String name) {
 			int id = otherIDs++;
 			
-			addEntry(id, name, Sym.VariablePrefix, -1, null);
+			addEntry(id, name, Variable, -1, null);
 			
 			return id;
 		}
@@ -60,98 +78,236 @@ public class SymbolTable {
 		public int addArray(String name, int[] dimensions) {
 			int id = otherIDs++;
 			
-			addEntry(id, name, Sym.ArrayPrefix, -1, dimensions);
+			addEntry(id, name, Array, -1, dimensions);
 			
 			return id;
 		}
 		
-		private void addEntry(int id, String name, String type, int params, int[] dim) {
-			if (hasID(id)) {
+		private void addEntry(int id, String name, byte type, int params, int[] dim) {
+			if (hasID(id) || id < firstID) {
 				throw new IllegalArgumentException();
 			}
+			if (this != getLocalFrame()) {
+				throw new IllegalStateException("Can only add entries to the local frame");
+			}
 			
-			if (type == Sym.VariablePrefix || type == Sym.ArrayPrefix) {
+			if (type == Variable || type == Array) {
 				if (hasNounName(name)) {
 					throw new IllegalArgumentException();
 				}
-				
-				nounNames.put(name, id);				
-			}else if (type == Sym.ProcedurePrefix || type == Sym.FunctionPrefix) {
+			}else if (type == Procedure || type == Function) {
 				if (hasVerbName(name)) {
 					throw new IllegalArgumentException();
 				}
-				
-				verbNames.put(name, id);
-			}else if (type == Sym.KeywordPrefix) {
+			}else if (type == Keyword) {
 				if (hasNounName(name) || hasVerbName(name)) {
 					throw new IllegalArgumentException();
 				}
-				
-				nounNames.put(name, id);
-				verbNames.put(name, id);
 			}else{
 				throw new IllegalArgumentException();
 			}
-			depths.put(id, depth);
-			types.put(id, type);
-			parameters.put(id, params);
-			dimensions.put(id, dim);
-			ids.put(id, name);
+			
+			int i = id - firstID;
+			ensureSymbolCapacity(i + 1);
+			int n = names.intern(name);
+			ensureNameCapacity(n + 1);
+			
+			types[i] = type;
+			depths[i] = depth;
+			parameters[i] = params;
+			dimensions[i] = dim;
+			nameIndices[i] = n;
+			
+			if (type != Procedure && type != Function) {
+				shadowed[i] = resolve(false, n);
+				nounBindings[n] = id + 1;
+			}
+			if (type != Variable && type != Array) {
+				shadowed[i] = resolve(true, n);
+				verbBindings[n] = id + 1;
+			}
+			
+			if (declaredCount == declared.length) {
+				declared = Arrays.copyOf(declared, declaredCount * 2);
+			}
+			declared[declaredCount++] = id;
 		}
 	}
 	
-	private LinkedList<Scope> frames;
-	private HashMap<Integer, Integer> depths;
-	private HashMap<Integer, String> types;
-	private HashMap<Integer, Integer> parameters;
-	private HashMap<Integer, int[]> dimensions;
-	private HashMap<Integer, Boolean> relativeOffsets;
-	private HashMap<Integer, Integer> offsets;
-	private HashMap<Integer, String> ids;
+	private static final byte Keyword = 1;
+	private static final byte Procedure = 2;
+	private static final byte Function = 3;
+	private static final byte Variable = 4;
+	private static final byte Array = 5;
+	
+	private static final byte RelativeOffset = 1;
+	
+	private SymbolTable parent;
+	private int firstID;
+	private int verbLimit;
+	
+	private ArrayList<Scope> frames;
+	private NamePool names;
+	
+	// Indexed by name index, holding symbol ID + 1 (0 if unbound).
+	private int[] nounBindings;
+	private int[] verbBindings;
+	
+	// Indexed by symbol ID - firstID.
+	private byte[] types;
+	private byte[] flags;
+	private int[] depths;
+	private int[] parameters;
+	private int[][] dimensions;
+	private int[] offsets;
+	private int[] nameIndices;
+	private int[] shadowed;
+	
+	// Symbols in declaration order; frameStarts marks where each frame begins.
+	private int[] declared;
+	private int declaredCount;
+	private int[] frameStarts;
+	
 	private int otherIDs;
 	
 	public SymbolTable() {
-		Scope globalFrame = new Scope(0);
-		
-		frames = new LinkedList<>();
-		frames.push(globalFrame);
-		depths = new HashMap<>();
-		types = new HashMap<>();
-		parameters = new HashMap<>();
-		dimensions = new HashMap<>();
-		relativeOffsets = new HashMap<>();
-		offsets = new HashMap<>();
-		ids = new HashMap<>();
-		otherIDs = 300;
-		
-		globalFrame.addEntry(41, "then", Sym.KeywordPrefix, -1, null);
-		globalFrame.addEntry(42, "do", Sym.KeywordPrefix, -1, null);
-		
-		globalFrame.addEntry(81, "od", Sym.KeywordPrefix, -1, null);
-		globalFrame.addEntry(82, "fi", Sym.KeywordPrefix, -1, null);
-		
-		globalFrame.addEntry(90, "else", Sym.KeywordPrefix, -1, null);
-		
-		globalFrame.addEntry(100, "let", Sym.KeywordPrefix, -1, null);
-		globalFrame.addEntry(101, "call", Sym.KeywordPrefix, -1, null);
-		globalFrame.addEntry(102, "if", Sym.KeywordPrefix, -1, null);
-		globalFrame.addEntry(103, "while", Sym.KeywordPrefix, -1, null);
-		globalFrame.addEntry(104, "return", Sym.KeywordPrefix, -1, null);
-
-		globalFrame.addEntry(110, "var", Sym.KeywordPrefix, -1, null);
-		globalFrame.addEntry(111, "array", Sym.KeywordPrefix, -1, null);
-		globalFrame.addEntry(112, "function", Sym.KeywordPrefix, -1, null);
-		globalFrame.addEntry(113, "procedure", Sym.KeywordPrefix, -1, null);
-
-		globalFrame.addEntry(200, "main", Sym.KeywordPrefix, -1, null);
+		this(new NamePool());
+	}
+	
+	public SymbolTable(NamePool n) {
+		this(null, n, 0, 300, Integer.MAX_VALUE);
+		
+		ensureSymbolCapacity(512);
+		
+		Scope globalFrame = getGlobalFrame();
 		
-		globalFrame.addEntry(256, "InputNum", Sym.FunctionPrefix, 0, null);
-		globalFrame.addEntry(257, "OutputNum", Sym.ProcedurePrefix, 1, null);
-		globalFrame.addEntry(258, "OutputNewLine", Sym.ProcedurePrefix, 0, null);
+		globalFrame.addEntry(41, "then", Keyword, -1, null);
+		globalFrame.addEntry(42, "do", Keyword, -1, null);
+		
+		globalFrame.addEntry(81, "od", Keyword, -1, null);
+		globalFrame.addEntry(82, "fi", Keyword, -1, null);
+		
+		globalFrame.addEntry(90, "else", Keyword, -1, null);
+		
+		globalFrame.addEntry(100, "let", Keyword, -1, null);
+		globalFrame.addEntry(101, "call", Keyword, -1, null);
+		globalFrame.addEntry(102, "if", Keyword, -1, null);
+		globalFrame.addEntry(103, "while", Keyword, -1, null);
+		globalFrame.addEntry(104, "return", Keyword, -1, null);
+		
+		globalFrame.addEntry(110, "var", Keyword, -1, null);
+		globalFrame.addEntry(111, "array", Keyword, -1, null);
+		globalFrame.addEntry(112, "function", Keyword, -1, null);
+		globalFrame.addEntry(113, "procedure", Keyword, -1, null);
+		
+		globalFrame.addEntry(200, "main", Keyword, -1, null);
+		
+		globalFrame.addEntry(256, "InputNum", Function, 0, null);
+		globalFrame.addEntry(257, "OutputNum", Procedure, 1, null);
+		globalFrame.addEntry(258, "OutputNewLine", Procedure, 0, null);
+	}
+	
+	// Overlay on the global frame of p. New symbols get IDs from first on, and
+	// procedures and functions of p declared after lastVerb are not visible.
+	public SymbolTable(SymbolTable p, int first, int lastVerb) {
+		this(p, p.names, first, first, lastVerb);
+		
+		if (p.getStackDepth() != 0 || p.parent != null) {
+			throw new IllegalStateException("Can only overlay the global frame of a root table");
+		}
+	}
+	
+	private SymbolTable(SymbolTable p, NamePool n, int first, int nextID, int lastVerb) {
+		parent = p;
+		firstID = first;
+		verbLimit = lastVerb;
+		names = n;
+		
+		frames = new ArrayList<>();
+		frames.add(new Scope(0));
+		nounBindings = new int[0];
+		verbBindings = new int[0];
+		types = new byte[0];
+		flags = new byte[0];
+		depths = new int[0];
+		parameters = new int[0];
+		dimensions = new int[0][];
+		offsets = new int[0];
+		nameIndices = new int[0];
+		shadowed = new int[0];
+		declared = new int[64];
+		declaredCount = 0;
+		frameStarts = new int[8];
+		otherIDs = nextID;
+		
+		ensureSymbolCapacity(64);
+		ensureNameCapacity(64);
+	}
+	
+	private void ensureSymbolCapacity(int capacity) {
+		if (capacity <= types.length) return;
+		
+		int size = Math.max(capacity, types.length * 2);
+		types = Arrays.copyOf(types, size);
+		flags = Arrays.copyOf(flags, size);
+		depths = Arrays.copyOf(depths, size);
+		parameters = Arrays.copyOf(parameters, size);
+		dimensions = Arrays.copyOf(dimensions, size);
+		offsets = Arrays.copyOf(offsets, size);
+		nameIndices = Arrays.copyOf(nameIndices, size);
+		shadowed = Arrays.copyOf(shadowed, size);
+	}
+	
+	private void ensureNameCapacity(int capacity) {
+		if (capacity <= nounBindings.length) return;
+		
+		int size = Math.max(capacity, nounBindings.length * 2);
+		nounBindings = Arrays.copyOf(nounBindings, size);
+		verbBindings = Arrays.copyOf(verbBindings, size);
+	}
+	
+	public NamePool getNames() {
+		return names;
+	}
+	
+	private boolean isLocal(int id) {
+		return id >= firstID && id - firstID < types.length;
+	}
+	
+	private byte typeOf(int id) {
+		if (isLocal(id)) return types[id - firstID];
+		else if (parent != null && id >= 0 && id < firstID) return parent.typeOf(id);
+		else return 0;
+	}
+	
+	private int depthOf(int id) {
+		return isLocal(id) ? depths[id - firstID] : parent.depthOf(id);
+	}
+	
+	private int shadowedOf(int id) {
+		return isLocal(id) ? shadowed[id - firstID] : parent.shadowedOf(id);
+	}
+	
+	private int resolve(boolean verb, int n) {
+		int[] bindings = verb ? verbBindings : nounBindings;
+		int id = (n < bindings.length) ? bindings[n] - 1 : -1;
+		
+		if (id < 0 && parent != null) {
+			id = parent.resolve(verb, n);
+			
+			if (verb && id > verbLimit) id = -1;
+		}
+		
+		return id;
 	}
 	
 	public void pushFrame() {
-		frames.push(new Scope(frames.size()));
+		if (frames.size() == frameStarts.length) {
+			frameStarts = Arrays.copyOf(frameStarts, frameStarts.length * 2);
+		}
+		frameStarts[frames.size()] = declaredCount;
+		
+		frames.add(new Scope(frames.size()));
 	}
 	
 	public void popFrame() {
@@ -159,55 +315,57 @@ public class SymbolTable {
 			throw new IllegalStateException("Can not pop global frame");
 		}
 		
-		frames.pop();
+		unwind(frameStarts[frames.size() - 1]);
+		
+		frames.remove(frames.size() - 1);
+	}
+	
+	private void unwind(int start) {
+		while (declaredCount > start) {
+			int id = declared[--declaredCount];
+			int i = id - firstID;
+			int n = nameIndices[i];
+			
+			if (types[i] == Procedure || types[i] == Function) {
+				verbBindings[n] = shadowed[i] + 1;
+			}else{
+				nounBindings[n] = shadowed[i] + 1;
+			}
+		}
 	}
 	
 	public Scope getLocalFrame() {
-		return frames.peek();
+		return frames.get(frames.size() - 1);
 	}
 	
 	public Scope getGlobalFrame() {
-		return frames.getLast();
+		return frames.get(0);
 	}
 	
 	public int getStackDepth() {
 		return frames.size() - 1;
 	}
 	
+	private int lookup(boolean verb, String name) {
+		int n = names.find(name);
+		
+		return (n >= 0) ? resolve(verb, n) : -1;
+	}
+	
 	public boolean hasNounName(String name) {
-		for (Scope frame : frames) {
-			if (frame.hasNounName(name)) {
-				return true;
-			}
-		}
-		return false;
+		return lookup(false, name) >= 0;
 	}
 	
 	public int nounNameToID(String name) {
-		for (Scope frame : frames) {
-			if (frame.hasNounName(name)) {
-				return frame.nounNameToID(name);
-			}
-		}
-		return -1;
+		return lookup(false, name);
 	}
 
 	public boolean hasVerbName(String name) {
-		for (Scope frame : frames) {
-			if (frame.hasVerbName(name)) {
-				return true;
-			}
-		}
-		return false;
+		return lookup(true, name) >= 0;
 	}
 	
 	public int verbNameToID(String name) {
-		for (Scope frame : frames) {
-			if (frame.hasVerbName(name)) {
-				return frame.verbNameToID(name);
-			}
-		}
-		return -1;
+		return lookup(true, name);
 	}
 
 	public int keywordToID(String name) {
@@ -215,52 +373,51 @@ public class SymbolTable {
 	}
 	
 	public boolean hasID(int id) {
-		return ids.containsKey(id);
+		return typeOf(id) != 0;
 	}
 	
 	public String IDToName(int id) {
-		return ids.get(id);
+		if (isLocal(id)) return (types[id - firstID] != 0) ? names.getName(nameIndices[id - firstID]) : null;
+		else if (parent != null && id >= 0 && id < firstID) return parent.IDToName(id);
+		else return null;
 	}
 	
 	public int getDepth(int id) {
-		return depths.getOrDefault(id, -1);
+		return hasID(id) ? depthOf(id) : -1;
 	}
 	
 	private boolean isKeyword(int id) {
-		return Sym.KeywordPrefix.equals(types.get(id));
+		return typeOf(id) == Keyword;
 	}
 
 	public boolean isKeyword(String s) {
-		if (!getGlobalFrame().hasNounName(s)) {
-			return false;
-		}
-		
-		int id = nounNameToID(s);
-		return isKeyword(id);
+		return isKeyword(nounNameToID(s));
 	}
 	
 	public boolean isProcedure(int id) {
-		return Sym.ProcedurePrefix.equals(types.get(id));
+		return typeOf(id) == Procedure;
 	}
 	
 	public boolean isFunction(int id) {
-		return Sym.FunctionPrefix.equals(types.get(id));
+		return typeOf(id) == Function;
 	}
 	
 	public int getNumberOfParameters(int id) {
-		return parameters.get(id);
+		return isLocal(id) ? parameters[id - firstID] : parent.getNumberOfParameters(id);
 	}
 	
 	public boolean isVariable(int id) {
-		return Sym.VariablePrefix.equals(types.get(id));
+		return typeOf(id) == Variable;
 	}
 	
 	public boolean isArray(int id) {
-		return Sym.ArrayPrefix.equals(types.get(id));
+		return typeOf(id) == Array;
 	}
 	
 	public int[] getArrayDimensions(int id) {
-		return dimensions.get(id);
+		if (isLocal(id)) return dimensions[id - firstID];
+		else if (parent != null && id >= 0 && id < firstID) return parent.getArrayDimensions(id);
+		else return null;
 	}
 	
 	public int addProcedure(String name, int parameterCount) {
@@ -280,19 +437,79 @@ public class SymbolTable {
 	}
 	
 	public boolean hasRelativeOffset(int id) {
-		return relativeOffsets.getOrDefault(id, false);
+		return isLocal(id) && (flags[id - firstID] & RelativeOffset) != 0;
 	}
 	
 	public void setHasRelativeOffset(int id, boolean r) {
-		relativeOffsets.put(id, r);
+		ensureSymbolCapacity(id - firstID + 1);
+		
+		if (r) flags[id - firstID] |= RelativeOffset;
+		else flags[id - firstID] &= ~RelativeOffset;
 	}
 	
 	public int getOffset(int id) {
-		return offsets.getOrDefault(id, 0);
+		return isLocal(id) ? offsets[id - firstID] : 0;
 	}
 	
 	public void setOffset(int id, int o) {
-		offsets.put(id, o);
+		ensureSymbolCapacity(id - firstID + 1);
+		
+		offsets[id - firstID] = o;
+	}
+	
+	// Support for parsing function bodies in parallel: the parser declares
+	// all signatures up front, leaves room for each body's symbols, copies
+	// the symbols of each overlay back in, and rolls everything back if the
+	// bodies have to be parsed serially after all.
+	
+	int getNextID() {
+		return otherIDs;
+	}
+	
+	int getDeclarationCount() {
+		return declaredCount;
+	}
+	
+	void reserveIDs(int count) {
+		otherIDs += count;
+	}
+	
+	void rollback(int declarationCount, int nextID) {
+		if (getStackDepth() != 0) {
+			throw new IllegalStateException("Can only roll back the global frame");
+		}
+		
+		unwind(declarationCount);
+		
+		for (int id = nextID; id < otherIDs && isLocal(id); id++) {
+			types[id - firstID] = 0;
+		}
+		otherIDs = nextID;
+	}
+	
+	// Copies the symbols an overlay declared; they must be out of scope again.
+	// The overlay may come from an earlier table over the same names.
+	void adopt(SymbolTable overlay) {
+		if (overlay.parent == null || overlay.names != names || overlay.getStackDepth() != 0) {
+			throw new IllegalArgumentException();
+		}
+		
+		int first = overlay.firstID;
+		int count = overlay.otherIDs - first;
+		ensureSymbolCapacity(first + count - firstID);
+		
+		for (int j = 0; j < count; j++) {
+			int i = first + j - firstID;
+			
+			types[i] = overlay.types[j];
+			flags[i] = overlay.flags[j];
+			depths[i] = overlay.depths[j];
+			parameters[i] = overlay.parameters[j];
+			dimensions[i] = overlay.dimensions[j];
+			offsets[i] = overlay.offsets[j];
+			nameIndices[i] = overlay.nameIndices[j];
+			shadowed[i] = overlay.shadowed[j];
+		}
 	}
 	
 }
@@ -0,0 +1,64 @@
+package processor;
+
+import java.util.*;
+
+// Tokens are packed four ints apiece: kind, value, start offset and end
+// offset. The value is the number for Sym.number, the NamePool index for
+// Sym.ident and 0 otherwise.
+public class TokenBuffer {
+	private static final int Stride = 4;
+	
+	private int[] data;
+	private int count;
+	private CompilationException error;
+	
+	public TokenBuffer() {
+		data = new int[Stride * 256];
+		count = 0;
+		error = null;
+	}
+	
+	public void add(int kind, int value, int start, int end) {
+		if ((count + 1) * Stride > data.length) {
+			data = Arrays.copyOf(data, data.length * 2);
+		}
+		
+		int base = count * Stride;
+		data[base] = kind;
+		data[base + 1] = value;
+		data[base + 2] = start;
+		data[base + 3] = end;
+		count++;
+	}
+	
+	// A lexical error ends the buffer; it is raised once the parser gets
+	// that far, so errors surface in source order.
+	public void setError(CompilationException e) {
+		error = e;
+	}
+	
+	public CompilationException getError() {
+		return error;
+	}
+	
+	public int size() {
+		return count;
+	}
+	
+	public int getKind(int index) {
+		return data[index * Stride];
+	}
+	
+	public int getValue(int index) {
+		return data[index * Stride + 1];
+	}
+	
+	public int getStart(int index) {
+		return data[index * Stride + 2];
+	}
+	
+	public int getEnd(int index) {
+		return data[index * Stride + 3];
+	}
+	
+}
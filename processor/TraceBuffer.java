@@ -0,0 +1,22 @@
+package processor;
+
+public class TraceBuffer implements TraceSink {
+	private StringBuilder contents;
+	
+	public TraceBuffer() {
+		contents = new StringBuilder();
+	}
+	
+	public boolean isEnabled() {
+		return true;
+	}
+	
+	public void trace(String message) {
+		contents.append(message);
+	}
+	
+	public String toString() {
+		return contents.toString();
+	}
+	
+}
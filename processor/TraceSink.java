@@ -0,0 +1,23 @@
+package processor;
+
+public interface TraceSink {
+	public static final TraceSink Disabled = new TraceSink() {
+		public boolean isEnabled() {
+			return false;
+		}
+		
+		public void trace(String message) {
+		}
+	};
+	
+	// Callers check isEnabled() before building a message, so a disabled
+	// sink costs one virtual call and no string formatting.
+	public boolean isEnabled();
+	
+	public void trace(String message);
+	
+	public default void trace(String format, Object... args) {
+		trace(String.format(format, args));
+	}
+	
+}